@@ -0,0 +1,63 @@
+package io.simplequerybuilder.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Compares a JMH json result file with the stored baseline and fails when a benchmark lost more
+ * throughput, or allocates more bytes per operation, than the given tolerance allows.
+ * <p>
+ * Usage: {@code java -cp target/benchmarks.jar io.simplequerybuilder.benchmarks.BaselineCheck baseline.json result.json [tolerance]}
+ */
+public class BaselineCheck {
+    private static final Pattern RESULT = Pattern.compile(
+            "\"benchmark\"\\s*:\\s*\"([^\"]+)\".*?\"primaryMetric\"\\s*:\\s*\\{\\s*\"score\"\\s*:\\s*([-0-9.Ee+]+)"
+                    + "(?:.*?gc\\.alloc\\.rate\\.norm\"\\s*:\\s*\\{\\s*\"score\"\\s*:\\s*([-0-9.Ee+]+))?",
+            Pattern.DOTALL);
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: BaselineCheck <baseline.json> <result.json> [tolerance]");
+            System.exit(2);
+        }
+        var baseline = read(Path.of(args[0]));
+        var result = read(Path.of(args[1]));
+        double tolerance = args.length > 2 ? Double.parseDouble(args[2]) : 0.20;
+
+        var failed = false;
+        for (var entry : result.entrySet()) {
+            var expected = baseline.get(entry.getKey());
+            if (expected == null) {
+                System.out.printf("NEW   %s %.0f ops/s%n", entry.getKey(), entry.getValue()[0]);
+                continue;
+            }
+            var actual = entry.getValue();
+            var slower = actual[0] < expected[0] * (1 - tolerance);
+            var allocatesMore = !Double.isNaN(actual[1]) && !Double.isNaN(expected[1])
+                    && actual[1] > expected[1] * (1 + tolerance) + 8;
+            failed |= slower || allocatesMore;
+            System.out.printf("%-5s %s %.0f ops/s (baseline %.0f), %.0f B/op (baseline %.0f)%n",
+                    slower || allocatesMore ? "FAIL" : "OK", entry.getKey(),
+                    actual[0], expected[0], actual[1], expected[1]);
+        }
+        if (failed)
+            System.exit(1);
+    }
+
+    private static Map<String, double[]> read(Path file) throws IOException {
+        var scores = new LinkedHashMap<String, double[]>();
+        var entries = Files.readString(file).split("\"jmhVersion\"");
+        for (String entry : entries) {
+            var matcher = RESULT.matcher(entry);
+            if (matcher.find()) {
+                var allocation = matcher.group(3) == null ? Double.NaN : Double.parseDouble(matcher.group(3));
+                scores.put(matcher.group(1), new double[]{Double.parseDouble(matcher.group(2)), allocation});
+            }
+        }
+        return scores;
+    }
+}
@@ -0,0 +1,92 @@
+package io.simplequerybuilder.benchmarks;
+
+import io.simplequerybuilder.PlainSqlBuilder;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RenderingBenchmark {
+    private static final int SEARCH_PREDICATES = 20;
+
+    private PlainSqlBuilder simpleSelect;
+    private PlainSqlBuilder nestedQuery;
+    private boolean[] activeFilters;
+    private StringBuilder buffer;
+
+    @Setup
+    public void setUp() {
+        simpleSelect = new PlainSqlBuilder()
+                .select("o.id", "o.name", "o.amount")
+                .from("orders o")
+                .innerJoin("customers c on c.id = o.customer_id")
+                .where("o.tenant_id = :tenantId")
+                .and("o.created_date > :startDate")
+                .orderBy("o.created_date desc")
+                .limit(20)
+                .offset(40);
+
+        var topCustomers = new PlainSqlBuilder()
+                .select("ro.customer_id")
+                .from("orders ro")
+                .where("ro.amount > :minAmount")
+                .orderBy("ro.amount desc")
+                .limit(100);
+        var activeCustomers = new PlainSqlBuilder()
+                .select("c.id", "c.name")
+                .from("customers c")
+                .where("c.active is true")
+                .andIn("c.id", topCustomers);
+        nestedQuery = new PlainSqlBuilder()
+                .select("o.*", "ac.name")
+                .fromSubQuery(new PlainSqlBuilder()
+                        .select("o.*")
+                        .from("orders o")
+                        .where("o.tenant_id = :tenantId"), "o")
+                .innerJoin(activeCustomers, "ac on ac.id = o.customer_id")
+                .orderBy("o.id");
+
+        activeFilters = new boolean[SEARCH_PREDICATES];
+        for (int i = 0; i < SEARCH_PREDICATES; i += 2)
+            activeFilters[i] = true;
+
+        buffer = new StringBuilder(512);
+    }
+
+    @Benchmark
+    public String simpleSelect() {
+        return simpleSelect.buildSql();
+    }
+
+    @Benchmark
+    public int simpleSelectIntoReusedBuffer() {
+        buffer.setLength(0);
+        return simpleSelect.buildSql(buffer).length();
+    }
+
+    @Benchmark
+    public String countQuery() {
+        return simpleSelect.buildCountSql();
+    }
+
+    @Benchmark
+    public String andIfSearch() {
+        var query = new PlainSqlBuilder()
+                .select("o.*")
+                .from("orders o")
+                .where("o.tenant_id = :tenantId");
+        for (int i = 0; i < SEARCH_PREDICATES; i++)
+            query.andIf(activeFilters[i], "o.attribute_" + i + " = :attribute" + i);
+        return query.orderBy("o.id desc").limit(50).buildSql();
+    }
+
+    @Benchmark
+    public String nestedSubQueries() {
+        return nestedQuery.buildSql();
+    }
+}
@@ -0,0 +1,54 @@
+package io.simplequerybuilder.benchmarks;
+
+import io.simplequerybuilder.PlainSqlBuilder;
+import io.simplequerybuilder.Spec;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SpecCompositionBenchmark {
+    private static final int SPECS = 50;
+
+    private List<Spec> specs;
+
+    @Setup
+    public void setUp() {
+        specs = new ArrayList<>(SPECS);
+        for (int i = 0; i < SPECS; i++) {
+            specs.add(new Spec()
+                    .leftJoin("attributes a" + i + " on a" + i + ".order_id = o.id")
+                    .where("a" + i + ".name = :name" + i)
+                    .or("a" + i + ".value > :value" + i));
+        }
+    }
+
+    @Benchmark
+    public String mergeSpecs() {
+        var query = new PlainSqlBuilder()
+                .select("o.*")
+                .from("orders o");
+        for (Spec spec : specs)
+            query.and(spec);
+        return query.buildSql();
+    }
+
+    @Benchmark
+    public String nestSpecs() {
+        var composed = new Spec().where("o.tenant_id = :tenantId");
+        for (Spec spec : specs)
+            composed = new Spec().where("o.deleted is false").and(composed).and(spec);
+        return new PlainSqlBuilder()
+                .select("o.*")
+                .from("orders o")
+                .where(composed)
+                .buildSql();
+    }
+}
@@ -2,18 +2,37 @@ package io.simplequerybuilder;
 
 
 import java.util.*;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.function.Consumer;
 
 public abstract class BaseQueryBuilder<T extends BaseQueryBuilder<T>> extends Spec {
-    protected final List<String> columns = new ArrayList<>();
-    private final Set<String> orderBy = new LinkedHashSet<>();
-    private final LinkedHashSet<String> defaultSorts = new LinkedHashSet<>();
-    private final List<String> groupBy = new ArrayList<>();
-    private final List<String> having = new ArrayList<>();
-    private String from = "";
+    public static final String TOTAL_COUNT_COLUMN = "total_count";
+    private static final long NOT_LISTENING = Long.MIN_VALUE;
+    private static final int COLUMNS = 1 << 3;
+    private static final int ORDER_BY = 1 << 4;
+    private static final int DEFAULT_SORTS = 1 << 5;
+    private static final int GROUP_BY = 1 << 6;
+    private static final int HAVING = 1 << 7;
+    private static final int WITH_QUERIES = 1 << 8;
+    private static final int UNIONS = 1 << 9;
+    private static final int HOISTED = 1 << 10;
+
+    private List<String> columns = new ArrayList<>();
+    private Set<String> orderBy = new LinkedHashSet<>();
+    private Set<String> defaultSorts = new LinkedHashSet<>();
+    private List<String> groupBy = new ArrayList<>();
+    private List<String> having = new ArrayList<>();
+    private SqlFragment from = SqlFragment.text("");
     protected int limit;
     protected long offset;
+    private Object[] keysetValues;
+    private String deferredJoinKey;
+    private QueryListener listener;
+    private List<WithQuery> withQueries = new ArrayList<>(0);
+    private List<BaseQueryBuilder<?>> unions = new ArrayList<>(0);
+    private List<BaseQueryBuilder<?>> hoistedSubQueries = new ArrayList<>(0);
+    private boolean mergeOrEqualities;
+    private boolean parameterizeLiterals;
+    private int clauseLength;
 
     protected abstract T self();
 
@@ -22,25 +41,41 @@ public abstract class BaseQueryBuilder<T extends BaseQueryBuilder<T>> extends Sp
     }
 
     public T defaultOrderBy(String... orderByColumns) {
-        var trimmedColumns = Stream.of(orderByColumns)
-                .filter(Objects::nonNull)
-                .map(String::trim)
-                .collect(Collectors.toCollection(LinkedHashSet::new));
-
-        defaultSorts.addAll(trimmedColumns);
+        if (unshare(DEFAULT_SORTS))
+            defaultSorts = new LinkedHashSet<>(defaultSorts);
+        addTrimmed(defaultSorts, Arrays.asList(orderByColumns));
         return self();
     }
 
     public T orderBy(Collection<String> orderByColumns) {
-        var trimmedColumns = orderByColumns.stream()
-                .filter(Objects::nonNull)
-                .map(String::trim)
-                .collect(Collectors.toCollection(LinkedHashSet::new));
-
-        orderBy.addAll(trimmedColumns);
+        if (unshare(ORDER_BY))
+            orderBy = new LinkedHashSet<>(orderBy);
+        addTrimmed(orderBy, orderByColumns);
         return self();
     }
 
+    private void addTrimmed(Set<String> target, Collection<String> orderByColumns) {
+        for (String column : orderByColumns) {
+            if (column == null)
+                continue;
+            var trimmed = column.trim();
+            if (target.add(trimmed))
+                clauseLength += trimmed.length() + 2;
+        }
+    }
+
+
+    // Forks of a base builder are cheap, only the clauses a fork or its parent changes are copied.
+    @Override
+    @SuppressWarnings("unchecked")
+    public T fork() {
+        return (T) super.fork();
+    }
+
+    public T listener(QueryListener listener) {
+        this.listener = listener;
+        return self();
+    }
 
     public T limit(int limit) {
         this.limit = limit;
@@ -52,38 +87,117 @@ public abstract class BaseQueryBuilder<T extends BaseQueryBuilder<T>> extends Sp
         return self();
     }
 
+    public int limit() {
+        return limit;
+    }
+
+    public long offset() {
+        return keysetValues == null ? offset : 0;
+    }
+
+    public List<SortColumn> sortColumns() {
+        var sorts = orderBy.isEmpty() ? defaultSorts : orderBy;
+        var columns = new ArrayList<SortColumn>(sorts.size());
+        for (String sort : sorts)
+            columns.add(SortColumn.parse(sort));
+        return columns;
+    }
+
+    public T keysetAfter(Object... lastRowValues) {
+        this.keysetValues = lastRowValues.clone();
+        return self();
+    }
+
+    // Pages over the keys of the root table and joins the page back. Only to-one joins (leftJoinToOne,
+    // innerJoinToOne) keep one row per key, so any other join is rejected when the query is built.
+    public T deferredJoin(String primaryKeyColumn) {
+        this.deferredJoinKey = primaryKeyColumn;
+        return self();
+    }
+
     public T from(String from) {
+        return from(SqlFragment.text(from));
+    }
+
+    private T from(SqlFragment from) {
+        clauseLength += from.estimatedLength() - this.from.estimatedLength();
         this.from = from;
         return self();
     }
 
-    public T fromSubQuery(BaseQueryBuilder<?> subQuery, String alias) {
-        from("(%s) %s".formatted(subQuery.buildSql(), alias));
+    public T with(String name, BaseQueryBuilder<?> query) {
+        if (unshare(WITH_QUERIES))
+            withQueries = new ArrayList<>(withQueries);
+        withQueries.add(new WithQuery(name.trim(), query, false));
+        return self();
+    }
+
+    public T withMaterialized(String name, BaseQueryBuilder<?> query) {
+        if (unshare(WITH_QUERIES))
+            withQueries = new ArrayList<>(withQueries);
+        withQueries.add(new WithQuery(name.trim(), query, true));
+        return self();
+    }
+
+    // The order by and paging of this builder apply to the whole union.
+    public T unionAll(BaseQueryBuilder<?> query) {
+        if (unshare(UNIONS))
+            unions = new ArrayList<>(unions);
+        unions.add(query);
+        return self();
+    }
+
+    // When this subquery instance is used more than once, it is moved into the with clause and referenced by name.
+    // Only register uncorrelated subqueries: a with query can't see the aliases of the query that uses it.
+    public T hoistSharedSubQuery(BaseQueryBuilder<?> subQuery) {
+        if (unshare(HOISTED))
+            hoistedSubQueries = new ArrayList<>(hoistedSubQueries);
+        hoistedSubQueries.add(subQuery);
+        return self();
+    }
+
+    // Equalities on one column joined by or are rendered as a single in list: "a = :x or a = :y" becomes "a in (:x, :y)".
+    public T mergeOrEqualities() {
+        this.mergeOrEqualities = true;
+        return self();
+    }
+
+    // Number and string literals in where and having become generated parameters of the bound sql
+    // (:literal1, ...), so queries that only differ in literals share one statement.
+    public T parameterizeLiterals() {
+        this.parameterizeLiterals = true;
         return self();
     }
 
+    public T fromSubQuery(BaseQueryBuilder<?> subQuery, String alias) {
+        return from(SqlFragment.subQuery("", subQuery, " " + alias));
+    }
+
     public T innerJoin(BaseQueryBuilder<?> subQuery, String alias) {
-        innerJoin("(%s) %s".formatted(subQuery.buildSql(), alias));
+        addJoin(SqlFragment.subQuery("inner join ", subQuery, " " + alias));
         return self();
     }
 
     public T innerJoinLateral(BaseQueryBuilder<?> subQuery, String alias) {
-        innerJoin("lateral (%s) %s on true".formatted(subQuery.buildSql(), alias));
+        addJoin(SqlFragment.subQuery("inner join lateral ", subQuery, " " + alias + " on true"));
         return self();
     }
 
     public T leftJoin(BaseQueryBuilder<?> subQuery, String alias) {
-        leftJoin("(%s) %s".formatted(subQuery.buildSql(), alias));
+        addJoin(SqlFragment.subQuery("left join ", subQuery, " " + alias));
         return self();
     }
 
     public T leftJoinLateral(BaseQueryBuilder<?> subQuery, String alias) {
-        leftJoin("lateral (%s) %s on true".formatted(subQuery.buildSql(), alias));
+        addJoin(SqlFragment.subQuery("left join lateral ", subQuery, " " + alias + " on true"));
         return self();
     }
 
     public T select(String column) {
+        if (unshare(COLUMNS))
+            columns = new ArrayList<>(columns);
         columns.add(column);
+        clauseLength += column.length() + 2;
         return self();
     }
 
@@ -93,6 +207,11 @@ public abstract class BaseQueryBuilder<T extends BaseQueryBuilder<T>> extends Sp
         return self();
     }
 
+    // Read only, so a fork can't change the columns it shares with its parent. Use select to add one.
+    protected List<String> columns() {
+        return Collections.unmodifiableList(columns);
+    }
+
     @Override
     public T join(String joinStatement) {
         super.join(joinStatement);
@@ -111,13 +230,45 @@ public abstract class BaseQueryBuilder<T extends BaseQueryBuilder<T>> extends Sp
         return self();
     }
 
+    @Override
+    public T leftJoinToOne(String joinStatement) {
+        super.leftJoinToOne(joinStatement);
+        return self();
+    }
+
+    public T leftJoinToOne(BaseQueryBuilder<?> subQuery, String alias) {
+        addJoin(SqlFragment.toOneJoin(SqlFragment.subQuery("left join ", subQuery, " " + alias), CountQueryOptimizer.aliasOf(alias), true));
+        return self();
+    }
+
+    @Override
+    public T innerJoinToOne(String joinStatement) {
+        super.innerJoinToOne(joinStatement);
+        return self();
+    }
+
+    public T innerJoinToOne(BaseQueryBuilder<?> subQuery, String alias) {
+        addJoin(SqlFragment.toOneJoin(SqlFragment.subQuery("inner join ", subQuery, " " + alias), CountQueryOptimizer.aliasOf(alias), false));
+        return self();
+    }
+
     public T groupBy(String... groupByColumns) {
-        groupBy.addAll(Arrays.asList(groupByColumns));
+        if (unshare(GROUP_BY))
+            groupBy = new ArrayList<>(groupBy);
+        for (String column : groupByColumns) {
+            groupBy.add(column);
+            clauseLength += column.length() + 2;
+        }
         return self();
     }
 
     public T having(String... havingCriteria) {
-        this.having.addAll(Arrays.asList(havingCriteria));
+        if (unshare(HAVING))
+            having = new ArrayList<>(having);
+        for (String criteria : havingCriteria) {
+            having.add(criteria);
+            clauseLength += criteria.length() + 2;
+        }
         return self();
     }
 
@@ -133,6 +284,12 @@ public abstract class BaseQueryBuilder<T extends BaseQueryBuilder<T>> extends Sp
         return self();
     }
 
+    public T andIf(boolean condition, String filter, Object value) {
+        if (condition)
+            and(filter, value);
+        return self();
+    }
+
     @Override
     public T and(Spec other) {
         super.and(other);
@@ -145,12 +302,32 @@ public abstract class BaseQueryBuilder<T extends BaseQueryBuilder<T>> extends Sp
         return self();
     }
 
+    @Override
+    public T and(String filter, Object value) {
+        super.and(filter, value);
+        return self();
+    }
+
     @Override
     public T where(String filter) {
         super.where(filter);
         return self();
     }
 
+    @Override
+    public T where(String filter, Object value) {
+        super.where(filter, value);
+        return self();
+    }
+
+    // Puts the filters added so far in parentheses when they have a top level or, so a filter and-ed afterwards
+    // applies to all of them: "where (a or b) and c" instead of "where a or b and c".
+    public T groupFilters() {
+        if (hasTopLevelOr())
+            groupWhere();
+        return self();
+    }
+
     public T where(Spec filter) {
         super.and(filter);
         return self();
@@ -162,6 +339,18 @@ public abstract class BaseQueryBuilder<T extends BaseQueryBuilder<T>> extends Sp
         return self();
     }
 
+    @Override
+    public T or(String filter, Object value) {
+        super.or(filter, value);
+        return self();
+    }
+
+    @Override
+    public T bind(String name, Object value) {
+        super.bind(name, value);
+        return self();
+    }
+
     @Override
     public T or(Spec other) {
         super.or(other);
@@ -183,59 +372,579 @@ public abstract class BaseQueryBuilder<T extends BaseQueryBuilder<T>> extends Sp
         return buildSql(false, true);
     }
 
-    protected String buildSql(boolean countQuery, boolean includePaging) {
+    public StringBuilder buildCountSql(StringBuilder sql) {
+        appendInstrumented(new SqlWriter(sql), true, true);
+        return sql;
+    }
+
+    public StringBuilder buildSql(StringBuilder sql) {
+        appendInstrumented(new SqlWriter(sql), false, true);
+        return sql;
+    }
+
+    public BoundSql buildBoundSql(ParameterStyle parameterStyle) {
+        return buildBoundSql(parameterStyle, false);
+    }
+
+    public BoundSql buildBoundCountSql(ParameterStyle parameterStyle) {
+        return buildBoundSql(parameterStyle, true);
+    }
+
+    public String buildCappedCountSql(int cap) {
+        var sql = new SqlWriter(new StringBuilder(estimatedLength()));
+        long started = buildStarted();
+        appendCappedCountSql(sql, cap);
+        buildFinished(sql, true, started, 0);
+        return sql.toString();
+    }
+
+    public BoundSql buildBoundCappedCountSql(int cap, ParameterStyle parameterStyle) {
+        var sql = new SqlWriter(new StringBuilder(estimatedLength()), parameterStyle);
+        long started = buildStarted();
+        appendCappedCountSql(sql, cap);
+        buildFinished(sql, true, started, 0);
+        return sql.toBoundSql();
+    }
+
+    private void appendCappedCountSql(SqlWriter sql, int cap) {
+        if (cap < 1)
+            throw new IllegalArgumentException("cap must be positive");
+
+        checkNoUnions("Capped counts");
+
+        sql.enterScope(parameters);
+        int definitions = appendWith(sql, " ");
+        var omitsSubQueryOrdering = sql.omitSubQueryOrdering(true);
+        sql.append("select count(1) from (select 1");
+        appendBody(sql, CountQueryOptimizer.requiredJoins(joins, this::countReferences), false);
+        sql.append(" limit ").append(cap + 1L).append(") capped_rows");
+        sql.omitSubQueryOrdering(omitsSubQueryOrdering);
+        sql.endWith(definitions);
+        sql.exitScope();
+    }
+
+    public String buildSqlWithTotalCount() {
+        return buildSqlWithTotalCount(TotalCountStrategy.WINDOW);
+    }
+
+    public String buildSqlWithTotalCount(TotalCountStrategy strategy) {
+        var sql = new SqlWriter(new StringBuilder(estimatedLength() * 2));
+        long started = buildStarted();
+        appendSqlWithTotalCount(sql, strategy);
+        buildFinished(sql, false, started, 0);
+        return sql.toString();
+    }
 
-        var sql = new StringBuilder("select ");
-        if (countQuery)
-            sql.append("count(1) ");
+    public BoundSql buildBoundSqlWithTotalCount(TotalCountStrategy strategy, ParameterStyle parameterStyle) {
+        var sql = new SqlWriter(new StringBuilder(estimatedLength() * 2), parameterStyle);
+        long started = buildStarted();
+        appendSqlWithTotalCount(sql, strategy);
+        buildFinished(sql, false, started, 0);
+        return sql.toBoundSql();
+    }
+
+    // Every shard returns its first limit + offset rows, the offset is skipped after merging them.
+    public BoundSql buildBoundShardSql(ParameterStyle parameterStyle) {
+        var sql = new SqlWriter(new StringBuilder(estimatedLength()), parameterStyle);
+        appendInstrumented(sql, false, false);
+        if (limit > 0)
+            sql.append(" limit ").append(limit + offset());
+        return sql.toBoundSql();
+    }
+
+    // Equal fingerprints mean equal sql, up to hash collisions. Bound values are not part of it.
+    public long fingerprint() {
+        var fingerprint = new Fingerprint(false);
+        fingerprint(fingerprint);
+        return fingerprint.value();
+    }
+
+    // Ignores inlined literals, in list sizes and paging values, to group queries of the same shape.
+    public long shapeFingerprint() {
+        var fingerprint = new Fingerprint(true);
+        fingerprint(fingerprint);
+        return fingerprint.value();
+    }
+
+    void fingerprint(Fingerprint fingerprint) {
+        for (var withQuery : withQueries) {
+            fingerprint.add(withQuery.materialized() ? 'M' : 'W').add(withQuery.name());
+            withQuery.query().fingerprint(fingerprint);
+        }
+        fingerprint.add('s');
+        for (var subQuery : hoistedSubQueries) {
+            fingerprint.add('H');
+            subQuery.fingerprint(fingerprint);
+        }
+        if (mergeOrEqualities)
+            fingerprint.add('I');
+        if (parameterizeLiterals)
+            fingerprint.add('L');
+        for (String column : columns)
+            fingerprint.add(column);
+        fingerprint.add('f');
+        from.fingerprint(fingerprint);
+        fingerprint.add('j');
+        for (SqlFragment join : joins)
+            join.fingerprint(fingerprint);
+        fingerprint.add('w');
+        for (SqlFragment filter : where)
+            filter.fingerprint(fingerprint);
+        fingerprint.add('g');
+        for (String column : groupBy)
+            fingerprint.add(column);
+        fingerprint.add('h');
+        for (String criteria : having)
+            fingerprint.add(criteria);
+        fingerprint.add('o');
+        for (String sort : orderBy.isEmpty() ? defaultSorts : orderBy)
+            fingerprint.add(sort);
+        fingerprint.add('p');
+        if (fingerprint.normalizesLiterals())
+            fingerprint.add(limit > 0 ? 'l' : '-').add(offset > 0 ? 'o' : '-');
         else
-            sql.append(String.join(", ", columns));
+            fingerprint.add(limit).add(offset);
+        fingerprint.add(keysetValues == null ? -1 : keysetValues.length);
+        if (deferredJoinKey != null)
+            fingerprint.add(deferredJoinKey);
+        for (var union : unions) {
+            fingerprint.add('U');
+            union.fingerprint(fingerprint);
+        }
+    }
+
+    private void appendSqlWithTotalCount(SqlWriter sql, TotalCountStrategy strategy) {
+        checkNoUnions("Total counts");
+
+        sql.enterScope(parameters);
+        int definitions = appendWith(sql, strategy == TotalCountStrategy.CTE ? ", " : " ");
+        appendSelectWithTotalCount(sql, strategy, definitions > 0);
+        sql.endWith(definitions);
+        sql.exitScope();
+    }
+
+    private BoundSql buildBoundSql(ParameterStyle parameterStyle, boolean countQuery) {
+        var sql = new SqlWriter(new StringBuilder(estimatedLength()), parameterStyle);
+        appendInstrumented(sql, countQuery, true);
+        return sql.toBoundSql();
+    }
+
+    protected String buildSql(boolean countQuery, boolean includePaging) {
+        var sql = new SqlWriter(new StringBuilder(estimatedLength()));
+        appendInstrumented(sql, countQuery, includePaging);
+        return sql.toString();
+    }
+
+    private void appendInstrumented(SqlWriter sql, boolean countQuery, boolean includePaging) {
+        int start = sql.length();
+        long started = buildStarted();
+        appendSql(sql, countQuery, includePaging);
+        buildFinished(sql, countQuery, started, start);
+    }
+
+    public QueryListener listener() {
+        return listener != null ? listener : QueryListener.global();
+    }
+
+    private long buildStarted() {
+        return listener() == QueryListener.NOOP ? NOT_LISTENING : System.nanoTime();
+    }
+
+    private void buildFinished(SqlWriter sql, boolean countQuery, long started, int start) {
+        if (started == NOT_LISTENING)
+            return;
+        long renderNanos = System.nanoTime() - started;
+        listener().onBuild(new BuildEvent(shapeFingerprint(), countQuery, renderNanos, sql.length() - start,
+                where.size() + joins.size(), sql.subQueryCount()));
+    }
+
+    void appendSql(SqlWriter sql, boolean countQuery, boolean includePaging) {
+        sql.enterScope(parameters);
+        int definitions = appendWith(sql, " ");
+        var mergesOrEqualities = sql.mergeOrEqualities(mergeOrEqualities);
+        var parameterizesLiterals = sql.parameterizeLiterals(parameterizeLiterals);
+        appendSelect(sql, countQuery, includePaging);
+        sql.parameterizeLiterals(parameterizesLiterals);
+        sql.mergeOrEqualities(mergesOrEqualities);
+        sql.endWith(definitions);
+        sql.exitScope();
+    }
+
+    private List<WithQuery> withDefinitions() {
+        if (hoistedSubQueries.isEmpty())
+            return withQueries;
+
+        var uses = new SubQueryUses();
+        collectSubQueries(uses);
+        for (var withQuery : withQueries)
+            uses.inline.add(withQuery.query());
+
+        var definitions = new ArrayList<>(withQueries);
+        for (var subQuery : uses.order) {
+            if (uses.counts.get(subQuery) > 1 && !uses.inline.contains(subQuery) && isHoisted(subQuery))
+                definitions.add(new WithQuery("shared_" + (definitions.size() - withQueries.size() + 1), subQuery, false,
+                        uses.scopes.get(subQuery)));
+        }
+        return definitions;
+    }
+
+    private boolean isHoisted(BaseQueryBuilder<?> subQuery) {
+        for (var hoisted : hoistedSubQueries) {
+            if (hoisted == subQuery)
+                return true;
+        }
+        return false;
+    }
+
+    // Post order, so a shared subquery is defined before the shared subqueries that use it.
+    private void collectSubQueries(SubQueryUses uses) {
+        Consumer<SqlFragment.SubQuery> collect = fragment -> {
+            if (fragment.lateral())
+                uses.inline.add(fragment.subQuery());
+            collectSubQuery(fragment.subQuery(), uses);
+        };
+        from.forEachSubQuery(collect);
+        for (SqlFragment join : joins)
+            join.forEachSubQuery(collect);
+        for (SqlFragment filter : where)
+            filter.forEachSubQuery(collect);
+        for (var union : unions)
+            collectSubQuery(union, uses);
+    }
+
+    // A subquery used under builders with different parameters can't be defined once, its parameters may differ.
+    private static void collectSubQuery(BaseQueryBuilder<?> subQuery, SubQueryUses uses) {
+        if (uses.counts.merge(subQuery, 1, Integer::sum) > 1) {
+            if (!uses.scopes.get(subQuery).equals(uses.path))
+                uses.inline.add(subQuery);
+            return;
+        }
+        uses.scopes.put(subQuery, List.copyOf(uses.path));
+        if (subQuery.parameters != null)
+            uses.path.add(subQuery.parameters);
+        subQuery.collectSubQueries(uses);
+        if (subQuery.parameters != null)
+            uses.path.remove(uses.path.size() - 1);
+        uses.order.add(subQuery);
+    }
+
+    private static final class SubQueryUses {
+        final Map<BaseQueryBuilder<?>, Integer> counts = new IdentityHashMap<>();
+        // Subqueries that have to stay where they are used: lateral ones, with queries and ones used in other scopes
+        final Set<BaseQueryBuilder<?>> inline = Collections.newSetFromMap(new IdentityHashMap<>());
+        final Map<BaseQueryBuilder<?>, List<Map<String, Object>>> scopes = new IdentityHashMap<>();
+        final List<BaseQueryBuilder<?>> order = new ArrayList<>();
+        // The parameters of the builders between this one and the subquery being collected
+        final List<Map<String, Object>> path = new ArrayList<>();
+    }
+
+    private int appendWith(SqlWriter sql, String separator) {
+        var definitions = withDefinitions();
+        if (definitions.isEmpty())
+            return 0;
+
+        sql.append("with ");
+        for (int i = 0; i < definitions.size(); i++) {
+            var definition = definitions.get(i);
+            sql.append(i == 0 ? "" : ", ").append(definition.name())
+                    .append(definition.materialized() ? " as materialized (" : " as (");
+            var scopes = definition.scopes();
+            for (int scope = 0; scope < scopes.size(); scope++)
+                sql.enterScope(scopes.get(scope));
+            definition.query().appendSql(sql, false, true);
+            for (int scope = 0; scope < scopes.size(); scope++)
+                sql.exitScope();
+            sql.append(')');
+            sql.defineWith(definition.query(), definition.name());
+        }
+        sql.append(separator);
+        return definitions.size();
+    }
+
+    private void appendSelect(SqlWriter sql, boolean countQuery, boolean includePaging) {
+        if (countQuery) {
+            appendCountSelect(sql);
+            return;
+        }
+
+        if (includePaging && deferredJoinKey != null && (limit > 0 || offset > 0)) {
+            checkNoUnions("Deferred joins");
+            appendDeferredJoinSelect(sql);
+            return;
+        }
+        if (keysetValues != null)
+            checkNoUnions("Keyset pagination");
+
+        appendJoined(sql.append("select "), columns, ", ");
+        appendBody(sql, joins, true);
+        appendUnions(sql);
+
+        if (!sql.omitsSubQueryOrdering() || limit > 0 || offset > 0)
+            appendOrderBy(sql);
+        if (includePaging)
+            appendPaging(sql);
+    }
+
+    private void appendDeferredJoinSelect(SqlWriter sql) {
+        if (!groupBy.isEmpty())
+            throw new IllegalStateException("Deferred join can't be used together with group by");
+        for (SqlFragment join : joins) {
+            if (!(join instanceof SqlFragment.ToOneJoin))
+                throw new IllegalStateException("Deferred join only supports to-one joins (leftJoinToOne, "
+                        + "innerJoinToOne), other joins repeat the key of a row");
+        }
+
+        var keyColumn = deferredJoinKey.substring(deferredJoinKey.lastIndexOf('.') + 1);
+        appendJoined(sql.append("select "), columns, ", ");
+        from.appendTo(sql.append(" from "), 0);
+        sql.append(" inner join (select ").append(deferredJoinKey);
+        appendBody(sql, CountQueryOptimizer.requiredJoins(joins, () -> joinReferences(true)), true);
+        appendOrderBy(sql);
+        appendPaging(sql);
+        sql.append(") deferred_page on deferred_page.").append(keyColumn).append(" = ").append(deferredJoinKey);
 
-        sql.append(" from ").append(from);
+        // The page already holds only the matching keys, filtering again would bind the parameters twice
         if (!joins.isEmpty())
-            sql.append(" ").append(String.join(" ", joins));
+            appendFragments(sql.append(' '), joins);
+        appendOrderBy(sql);
+    }
+
+    private void appendCountSelect(SqlWriter sql) {
+        var omitsSubQueryOrdering = sql.omitSubQueryOrdering(true);
+        var countJoins = CountQueryOptimizer.requiredJoins(joins, this::countReferences);
+        if (!unions.isEmpty()) {
+            appendJoined(sql.append("select count(1) from (select "), columns, ", ");
+            appendBody(sql, joins, false);
+            appendUnions(sql);
+            sql.append(") union_rows");
+        } else if (groupBy.isEmpty()) {
+            sql.append("select count(1) ");
+            appendBody(sql, countJoins, false);
+        } else {
+            sql.append("select count(1) from (select 1");
+            appendBody(sql, countJoins, false);
+            sql.append(") grouped_rows");
+        }
+        sql.omitSubQueryOrdering(omitsSubQueryOrdering);
+    }
+
+    private void appendUnions(SqlWriter sql) {
+        for (var union : unions) {
+            sql.append(" union all ");
+            if (union.needsParentheses())
+                sql.append('(').appendSubQuery(union).append(')');
+            else
+                sql.appendSubQuery(union);
+        }
+    }
+
+    private boolean needsParentheses() {
+        return !orderBy.isEmpty() || !defaultSorts.isEmpty() || limit > 0 || offset > 0 || !unions.isEmpty()
+                || !withQueries.isEmpty() || !hoistedSubQueries.isEmpty();
+    }
 
-        if (!where.isEmpty())
-            sql.append(buildWhereStatement());
+    private void checkNoUnions(String feature) {
+        if (!unions.isEmpty())
+            throw new IllegalStateException(feature + " can't be combined with union all");
+    }
+
+    private CharSequence countReferences() {
+        return joinReferences(false);
+    }
+
+    private CharSequence joinReferences(boolean withOrderBy) {
+        var references = new SqlWriter(new StringBuilder());
+        appendWhere(references, true);
+        appendJoined(references.append(' '), groupBy, " ");
+        appendJoined(references.append(' '), having, " ");
+        if (withOrderBy)
+            appendJoined(references.append(' '), orderBy.isEmpty() ? defaultSorts : orderBy, " ");
+        return references.toString();
+    }
+
+    private void appendSelectWithTotalCount(SqlWriter sql, TotalCountStrategy strategy, boolean withStarted) {
+        if (strategy == TotalCountStrategy.CTE) {
+            appendJoined(sql.append(withStarted ? "page_total as (select count(1) as " : "with page_total as (select count(1) as ").append(TOTAL_COUNT_COLUMN)
+                    .append(" from (select "), columns, ", ");
+            appendBody(sql, joins, false);
+            appendJoined(sql.append(") page_rows) select "), columns, ", ");
+            sql.append(", (select ").append(TOTAL_COUNT_COLUMN).append(" from page_total) as ").append(TOTAL_COUNT_COLUMN);
+        } else if (keysetValues != null && keysetValues.length > 0) {
+            // count(*) over() would only count the rows after the seek predicate.
+            appendJoined(sql.append("select "), columns, ", ");
+            appendJoined(sql.append(", (select count(1) from (select "), columns, ", ");
+            appendBody(sql, joins, false);
+            sql.append(") page_rows) as ").append(TOTAL_COUNT_COLUMN);
+        } else {
+            appendJoined(sql.append("select "), columns, ", ");
+            sql.append(", count(*) over() as ").append(TOTAL_COUNT_COLUMN);
+        }
+
+        appendBody(sql, joins, true);
+        appendOrderBy(sql);
+        appendPaging(sql);
+    }
+
+    private void appendBody(SqlWriter sql, Collection<SqlFragment> joins, boolean withKeyset) {
+        from.appendTo(sql.append(" from "), 0);
+        if (!joins.isEmpty())
+            appendFragments(sql.append(' '), joins);
+
+        if (withKeyset && keysetValues != null)
+            appendKeysetWhereStatement(sql);
+        else if (!where.isEmpty())
+            appendWhereStatement(sql);
 
         if (!groupBy.isEmpty())
-            sql.append(" group by ").append(String.join(", ", groupBy));
+            appendJoined(sql.append(" group by "), groupBy, ", ");
 
         if (!having.isEmpty())
-            sql.append(" having ").append(String.join(", ", having));
+            appendHaving(sql);
+    }
 
-        if (!countQuery) {
-            if (!orderBy.isEmpty())
-                sql.append(" order by ").append(String.join(", ", orderBy));
-            else if (!defaultSorts.isEmpty())
-                sql.append(" order by ").append(String.join(", ", defaultSorts));
+    private void appendHaving(SqlWriter sql) {
+        sql.append(" having ");
+        for (int i = 0; i < having.size(); i++)
+            sql.append(i == 0 ? "" : ", ").appendPredicate(having.get(i), 0);
+    }
 
-            if (includePaging) {
-                if (limit > 0)
-                    sql.append(" limit ").append(limit);
+    private void appendOrderBy(SqlWriter sql) {
+        if (!orderBy.isEmpty())
+            appendJoined(sql.append(" order by "), orderBy, ", ");
+        else if (!defaultSorts.isEmpty())
+            appendJoined(sql.append(" order by "), defaultSorts, ", ");
+    }
 
-                if (offset > 0)
-                    sql.append(" offset ").append(offset);
-            }
+    private void appendPaging(SqlWriter sql) {
+        if (limit > 0)
+            sql.append(" limit ").append(limit);
+
+        if (offset > 0 && keysetValues == null)
+            sql.append(" offset ").append(offset);
+    }
+
+    private static void appendJoined(SqlWriter sql, Collection<String> parts, String delimiter) {
+        var first = true;
+        for (String part : parts) {
+            if (!first)
+                sql.append(delimiter);
+            sql.append(part);
+            first = false;
         }
+    }
 
-        return sql.toString();
+    private static void appendFragments(SqlWriter sql, Collection<SqlFragment> fragments) {
+        var first = true;
+        for (SqlFragment fragment : fragments) {
+            if (!first)
+                sql.append(' ');
+            fragment.appendTo(sql, 0);
+            first = false;
+        }
+    }
+
+    @Override
+    int estimatedLength() {
+        return 64 + clauseLength + super.estimatedLength();
     }
 
     public String buildWhereStatement() {
-        var escaped = buildFilterStatements();
-        if (escaped == null)
-            return "";
-        return " where" + escaped;
+        var sql = new SqlWriter(new StringBuilder(estimatedLength()));
+        sql.mergeOrEqualities(mergeOrEqualities);
+        appendWhereStatement(sql);
+        return sql.toString();
+    }
+
+    private void appendWhereStatement(SqlWriter sql) {
+        int start = sql.length();
+        sql.append(" where");
+        if (!appendFilterStatements(sql))
+            sql.setLength(start);
+    }
+
+    private void appendKeysetWhereStatement(SqlWriter sql) {
+        var seek = keysetValues.length > 0;
+        var grouped = seek && hasTopLevelOr();
+        int start = sql.length();
+        sql.append(grouped ? " where (" : " where");
+        if (!appendWhere(sql, !grouped)) {
+            sql.setLength(start);
+            if (seek)
+                appendKeysetPredicate(sql.append(" where "));
+            return;
+        }
+
+        if (grouped)
+            sql.append(')');
+        if (seek)
+            appendKeysetPredicate(sql.append(" and "));
+    }
+
+    private void appendKeysetPredicate(SqlWriter sql) {
+        var columns = sortColumns().toArray(new SortColumn[0]);
+        if (columns.length != keysetValues.length)
+            throw new IllegalStateException("Keyset pagination needs one value per order by column, expected "
+                    + columns.length + " but got " + keysetValues.length);
+
+        var mixedDirections = false;
+        for (SortColumn column : columns)
+            mixedDirections |= column.descending() != columns[0].descending();
+
+        int i;
+        if (columns.length == 1) {
+            appendSeek(sql, columns[0], keysetValues[0]);
+        } else if (!mixedDirections) {
+            sql.append('(');
+            for (i = 0; i < columns.length; i++)
+                sql.append(i == 0 ? "" : ", ").append(columns[i].expression());
+            sql.append(columns[0].descending() ? ") < (" : ") > (");
+            for (i = 0; i < columns.length; i++)
+                sql.append(i == 0 ? "" : ", ").appendParameter("keyset", keysetValues[i]);
+            sql.append(')');
+        } else {
+            sql.append('(');
+            for (i = 0; i < columns.length; i++) {
+                if (i > 0)
+                    sql.append(" or ");
+                for (int equal = 0; equal < i; equal++)
+                    sql.append(columns[equal].expression()).append(" = ").appendParameter("keyset", keysetValues[equal]).append(" and ");
+                appendSeek(sql, columns[i], keysetValues[i]);
+            }
+            sql.append(')');
+        }
+    }
+
+    private static void appendSeek(SqlWriter sql, SortColumn column, Object value) {
+        sql.append(column.expression())
+                .append(column.descending() ? " < " : " > ")
+                .appendParameter("keyset", value);
     }
 
     public T andIn(String column, BaseQueryBuilder<T> inQuery) {
-        and("%s in (%s)".formatted(column, inQuery.buildSql()));
+        addFilter(SqlFragment.subQuery(AND + column + " in ", inQuery, ""));
         return self();
     }
 
     public T orIn(String column, BaseQueryBuilder<T> inQuery) {
-        or("%s in (%s)".formatted(column, inQuery.buildSql()));
+        addFilter(SqlFragment.subQuery(OR + column + " in ", inQuery, ""));
+        return self();
+    }
+
+    public T andIn(String column, Collection<?> values) {
+        return andIn(column, values, InListExpansion.bucketed());
+    }
+
+    public T orIn(String column, Collection<?> values) {
+        return orIn(column, values, InListExpansion.bucketed());
+    }
+
+    public T andIn(String column, Collection<?> values, InListExpansion expansion) {
+        addFilter(SqlFragment.inList(AND, column, Arrays.asList(values.toArray()), expansion));
+        return self();
+    }
+
+    public T orIn(String column, Collection<?> values, InListExpansion expansion) {
+        addFilter(SqlFragment.inList(OR, column, Arrays.asList(values.toArray()), expansion));
         return self();
     }
 }
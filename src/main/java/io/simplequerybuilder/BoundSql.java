@@ -0,0 +1,10 @@
+package io.simplequerybuilder;
+
+import java.util.List;
+
+/**
+ * Sql rendered together with the values of its parameters. {@code parameterNames} and
+ * {@code parameters} are parallel, ordered the way the parameters have to be bound.
+ */
+public record BoundSql(String sql, List<String> parameterNames, Object[] parameters) {
+}
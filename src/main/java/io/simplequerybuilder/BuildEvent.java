@@ -0,0 +1,5 @@
+package io.simplequerybuilder;
+
+public record BuildEvent(long shapeFingerprint, boolean countQuery, long renderNanos, int length, int fragments,
+                         int subQueries) {
+}
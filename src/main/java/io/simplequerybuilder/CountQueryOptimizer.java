@@ -0,0 +1,93 @@
+package io.simplequerybuilder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+final class CountQueryOptimizer {
+
+    private CountQueryOptimizer() {
+    }
+
+    /**
+     * Drops the joins marked with {@code leftJoinToOne} which are not referenced by the filters or by
+     * any join that is kept. Such joins can't change the number of rows, so counting without them is exact.
+     */
+    static Collection<SqlFragment> requiredJoins(Collection<SqlFragment> joins, Supplier<CharSequence> filters) {
+        List<SqlFragment.ToOneJoin> optional = null;
+        for (SqlFragment join : joins) {
+            if (join instanceof SqlFragment.ToOneJoin toOne && toOne.optional()) {
+                if (optional == null)
+                    optional = new ArrayList<>();
+                optional.add(toOne);
+            }
+        }
+        if (optional == null)
+            return joins;
+
+        var references = new StringBuilder(filters.get());
+        for (SqlFragment join : joins) {
+            if (!(join instanceof SqlFragment.ToOneJoin toOne && toOne.optional()))
+                render(join, references);
+        }
+
+        var required = new ArrayList<SqlFragment.ToOneJoin>(optional.size());
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (var join : optional) {
+                if (!required.contains(join) && references(references, join.alias())) {
+                    required.add(join);
+                    render(join, references);
+                    changed = true;
+                }
+            }
+        }
+
+        var result = new ArrayList<SqlFragment>(joins.size());
+        for (SqlFragment join : joins) {
+            if (!(join instanceof SqlFragment.ToOneJoin toOne && toOne.optional()) || required.contains(join))
+                result.add(join);
+        }
+        return result;
+    }
+
+    static String aliasOf(String joinStatement) {
+        var lowerCase = joinStatement.toLowerCase(Locale.ROOT);
+        int end = lowerCase.indexOf(" on ");
+        if (end < 0)
+            end = lowerCase.indexOf(" using");
+        var tableAndAlias = (end < 0 ? joinStatement : joinStatement.substring(0, end)).trim();
+        return tableAndAlias.substring(tableAndAlias.lastIndexOf(' ') + 1);
+    }
+
+    static boolean references(CharSequence text, String alias) {
+        int length = alias.length();
+        for (int i = 0; i + length <= text.length(); i++) {
+            if ((i == 0 || !isIdentifierPart(text.charAt(i - 1)))
+                    && (i + length == text.length() || !isIdentifierPart(text.charAt(i + length)))
+                    && matches(text, i, alias))
+                return true;
+        }
+        return false;
+    }
+
+    private static boolean matches(CharSequence text, int start, String alias) {
+        for (int i = 0; i < alias.length(); i++) {
+            if (Character.toLowerCase(text.charAt(start + i)) != Character.toLowerCase(alias.charAt(i)))
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+
+    private static void render(SqlFragment fragment, StringBuilder references) {
+        var sql = new SqlWriter(references);
+        fragment.appendTo(sql.append(' '), 0);
+    }
+}
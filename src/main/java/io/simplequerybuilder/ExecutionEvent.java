@@ -0,0 +1,9 @@
+package io.simplequerybuilder;
+
+/**
+ * {@code executeNanos} covers getting a connection, preparing and executing the statement, {@code fetchNanos} reading and mapping the
+ * rows. {@code shapeFingerprint} is 0 when the query was executed from rendered sql.
+ */
+public record ExecutionEvent(String sql, long shapeFingerprint, long rows, long executeNanos, long fetchNanos,
+                             RuntimeException failure) {
+}
@@ -0,0 +1,85 @@
+package io.simplequerybuilder;
+
+// 64 bit FNV-1a over the structure of a query, finished with the MurmurHash3 mixer. Strings are terminated so
+// that moving text between neighbouring parts changes the hash. With normalized literals, quoted strings and
+// numbers hash as a single '?' and only the presence of paging and the kind of in lists count.
+final class Fingerprint {
+    private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+
+    private final boolean normalizeLiterals;
+    private long hash = OFFSET_BASIS;
+
+    Fingerprint(boolean normalizeLiterals) {
+        this.normalizeLiterals = normalizeLiterals;
+    }
+
+    boolean normalizesLiterals() {
+        return normalizeLiterals;
+    }
+
+    Fingerprint add(char c) {
+        hash = (hash ^ c) * PRIME;
+        return this;
+    }
+
+    Fingerprint add(long value) {
+        for (int shift = 0; shift < Long.SIZE; shift += Character.SIZE)
+            add((char) (value >>> shift));
+        return this;
+    }
+
+    Fingerprint add(String text) {
+        if (!normalizeLiterals) {
+            for (int i = 0; i < text.length(); i++)
+                add(text.charAt(i));
+            return add('\0');
+        }
+
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (c == '\'') {
+                i = skipString(text, i);
+                add('?');
+            } else if (Character.isDigit(c) && (i == 0 || !isIdentifierPart(text.charAt(i - 1)))) {
+                while (i < text.length() && (Character.isDigit(text.charAt(i)) || text.charAt(i) == '.'))
+                    i++;
+                add('?');
+            } else {
+                add(c);
+                i++;
+            }
+        }
+        return add('\0');
+    }
+
+    long value() {
+        long h = hash;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static int skipString(String text, int quote) {
+        int i = quote + 1;
+        while (i < text.length()) {
+            if (text.charAt(i) == '\'') {
+                if (i + 1 < text.length() && text.charAt(i + 1) == '\'') {
+                    i += 2;
+                    continue;
+                }
+                return i + 1;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '.';
+    }
+}
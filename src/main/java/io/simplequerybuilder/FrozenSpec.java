@@ -0,0 +1,186 @@
+package io.simplequerybuilder;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An immutable {@link Spec}. Every composition method returns a new instance that shares the
+ * fragments of the spec it was created from, so frozen specs can be kept in static fields and
+ * composed by many threads at once. The filter text is rendered once and reused afterwards.
+ */
+public final class FrozenSpec extends Spec {
+    private final PersistentSet<SqlFragment> where;
+    private final PersistentSet<SqlFragment> joins;
+    private volatile String filterStatements;
+    private volatile SqlFragment andGroup;
+    private volatile SqlFragment orGroup;
+
+    FrozenSpec(PersistentSet<SqlFragment> where, PersistentSet<SqlFragment> joins, Map<String, Object> parameters) {
+        super(where, joins);
+        this.where = where;
+        this.joins = joins;
+        this.parameters = parameters;
+    }
+
+    static Map<String, Object> frozen(Map<String, Object> parameters) {
+        if (parameters == null || parameters.isEmpty())
+            return null;
+        return Collections.unmodifiableMap(new LinkedHashMap<>(parameters));
+    }
+
+    @Override
+    public FrozenSpec join(String joinStatement) {
+        return withJoin(SqlFragment.text(joinStatement.trim()));
+    }
+
+    @Override
+    public FrozenSpec innerJoin(String joinStatement) {
+        return withJoin(SqlFragment.text("inner join " + joinStatement.trim()));
+    }
+
+    @Override
+    public FrozenSpec leftJoin(String joinStatement) {
+        return withJoin(SqlFragment.text("left join " + joinStatement.trim()));
+    }
+
+    @Override
+    public FrozenSpec leftJoinToOne(String joinStatement) {
+        return withJoin(toOneJoin("left join ", joinStatement));
+    }
+
+    @Override
+    public FrozenSpec innerJoinToOne(String joinStatement) {
+        return withJoin(toOneJoin("inner join ", joinStatement));
+    }
+
+    @Override
+    public FrozenSpec and(String filter) {
+        return withFilter(SqlFragment.text(AND + filter.trim()));
+    }
+
+    @Override
+    public FrozenSpec where(String filter) {
+        return withFilter(SqlFragment.text(AND + filter.trim()));
+    }
+
+    @Override
+    public FrozenSpec or(String filter) {
+        return withFilter(SqlFragment.text(OR + filter.trim()));
+    }
+
+    @Override
+    public FrozenSpec append(String filter) {
+        return withFilter(SqlFragment.text(filter.trim()));
+    }
+
+    @Override
+    public FrozenSpec and(String filter, Object value) {
+        return bind(Placeholders.singleName(filter), value).and(filter);
+    }
+
+    @Override
+    public FrozenSpec where(String filter, Object value) {
+        return bind(Placeholders.singleName(filter), value).where(filter);
+    }
+
+    @Override
+    public FrozenSpec or(String filter, Object value) {
+        return bind(Placeholders.singleName(filter), value).or(filter);
+    }
+
+    @Override
+    public FrozenSpec bind(String name, Object value) {
+        return withParameters(Collections.singletonMap(name, value));
+    }
+
+    @Override
+    public FrozenSpec and(Spec spec) {
+        return merged(spec, spec.group(AND));
+    }
+
+    @Override
+    public FrozenSpec or(Spec spec) {
+        return merged(spec, spec.group(OR));
+    }
+
+    // Frozen specs share their filters instead of adding them one by one.
+    @Override
+    boolean simplifiable() {
+        return true;
+    }
+
+    @Override
+    public FrozenSpec freeze() {
+        return this;
+    }
+
+    @Override
+    public FrozenSpec fork() {
+        return this;
+    }
+
+    @Override
+    public String buildFilterStatements() {
+        var filters = filterStatements;
+        if (filters == null) {
+            filters = super.buildFilterStatements();
+            if (filters == null)
+                return null;
+            filterStatements = filters;
+        }
+        return filters;
+    }
+
+    @Override
+    SqlFragment group(String connector) {
+        var or = OR.equals(connector);
+        var group = or ? orGroup : andGroup;
+        if (group == null) {
+            group = super.group(connector);
+            if (group == null)
+                return null;
+            if (or)
+                orGroup = group;
+            else
+                andGroup = group;
+        }
+        return group;
+    }
+
+    private FrozenSpec merged(Spec spec, SqlFragment group) {
+        var mergedJoins = joins;
+        for (SqlFragment join : spec.joins)
+            mergedJoins = mergedJoins.with(join);
+        var mergedWhere = group == null ? where : where.with(group);
+        var mergedParameters = mergedParameters(spec.parameters);
+        if (mergedJoins == joins && mergedWhere == where && mergedParameters == parameters)
+            return this;
+        return new FrozenSpec(mergedWhere, mergedJoins, mergedParameters);
+    }
+
+    private FrozenSpec withFilter(SqlFragment filter) {
+        var merged = where.with(filter);
+        return merged == where ? this : new FrozenSpec(merged, joins, parameters);
+    }
+
+    private FrozenSpec withJoin(SqlFragment join) {
+        var merged = joins.with(join);
+        return merged == joins ? this : new FrozenSpec(where, merged, parameters);
+    }
+
+    private FrozenSpec withParameters(Map<String, Object> added) {
+        var merged = mergedParameters(added);
+        return merged == parameters ? this : new FrozenSpec(where, joins, merged);
+    }
+
+    private Map<String, Object> mergedParameters(Map<String, Object> added) {
+        if (added == null || added.isEmpty() || (parameters != null && parameters.entrySet().containsAll(added.entrySet())))
+            return parameters;
+
+        var merged = parameters == null ? new LinkedHashMap<String, Object>() : new LinkedHashMap<>(parameters);
+        for (var parameter : added.entrySet())
+            bindParameter(merged, parameter.getKey(), parameter.getValue());
+        return Collections.unmodifiableMap(merged);
+    }
+}
@@ -0,0 +1,8 @@
+package io.simplequerybuilder;
+
+final class GlobalQueryListener {
+    static volatile QueryListener listener = QueryListener.NOOP;
+
+    private GlobalQueryListener() {
+    }
+}
@@ -0,0 +1,56 @@
+package io.simplequerybuilder;
+
+/**
+ * Controls how {@code andIn(column, values)} renders its values. Lists are split into chunks of at
+ * most {@code maxChunkSize} placeholders, joined with {@code or}. With padding, the last chunk is
+ * padded to the next power of two by repeating its last value, so lists of different lengths share
+ * a handful of statement shapes. {@link #anyArray()} binds the whole list as one array parameter instead.
+ */
+public final class InListExpansion {
+    public static final int DEFAULT_MAX_CHUNK_SIZE = 1024;
+
+    private static final InListExpansion BUCKETED = new InListExpansion(DEFAULT_MAX_CHUNK_SIZE, true, false);
+    private static final InListExpansion ANY_ARRAY = new InListExpansion(Integer.MAX_VALUE, false, true);
+
+    private final int maxChunkSize;
+    private final boolean padded;
+    private final boolean anyArray;
+
+    private InListExpansion(int maxChunkSize, boolean padded, boolean anyArray) {
+        if (maxChunkSize < 1)
+            throw new IllegalArgumentException("maxChunkSize must be positive");
+        this.maxChunkSize = maxChunkSize;
+        this.padded = padded;
+        this.anyArray = anyArray;
+    }
+
+    public static InListExpansion bucketed() {
+        return BUCKETED;
+    }
+
+    public static InListExpansion bucketed(int maxChunkSize) {
+        return new InListExpansion(maxChunkSize, true, false);
+    }
+
+    public static InListExpansion exact(int maxChunkSize) {
+        return new InListExpansion(maxChunkSize, false, false);
+    }
+
+    public static InListExpansion anyArray() {
+        return ANY_ARRAY;
+    }
+
+    int maxChunkSize() {
+        return maxChunkSize;
+    }
+
+    boolean isAnyArray() {
+        return anyArray;
+    }
+
+    int placeholders(int values) {
+        if (!padded || values <= 1)
+            return values;
+        return Math.min(Integer.highestOneBit(values - 1) << 1, maxChunkSize);
+    }
+}
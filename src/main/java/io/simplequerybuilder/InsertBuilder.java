@@ -0,0 +1,169 @@
+package io.simplequerybuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+// Rows are rendered into multi-row values statements. A statement is closed before it would exceed maxParameters
+// bound values or maxBytes, estimated from the sql length and the size of the bound values. A single row is
+// never split, so a row larger than maxBytes gets a statement of its own.
+public class InsertBuilder {
+    public static final int DEFAULT_MAX_PARAMETERS = 65_535;
+
+    private String table;
+    private final List<String> columns = new ArrayList<>();
+    private Iterable<?> rows = List.of();
+    private Function<Object, Object[]> rowValues = row -> (Object[]) row;
+    private List<String> conflictTarget;
+    private List<String> updateColumns;
+    private int maxParameters = DEFAULT_MAX_PARAMETERS;
+    private int maxBytes = Integer.MAX_VALUE;
+
+    public InsertBuilder into(String table) {
+        this.table = table.trim();
+        return this;
+    }
+
+    public InsertBuilder columns(String... columns) {
+        for (String column : columns)
+            this.columns.add(column.trim());
+        return this;
+    }
+
+    public InsertBuilder rows(Iterable<Object[]> rows) {
+        this.rows = rows;
+        this.rowValues = row -> (Object[]) row;
+        return this;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <R> InsertBuilder rows(Iterable<R> rows, Function<? super R, Object[]> values) {
+        this.rows = rows;
+        this.rowValues = row -> values.apply((R) row);
+        return this;
+    }
+
+    public InsertBuilder onConflict(String... target) {
+        this.conflictTarget = List.of(target);
+        return this;
+    }
+
+    public InsertBuilder doNothing() {
+        this.updateColumns = List.of();
+        return this;
+    }
+
+    public InsertBuilder doUpdate(String... columns) {
+        this.updateColumns = List.of(columns);
+        return this;
+    }
+
+    public InsertBuilder maxParameters(int maxParameters) {
+        if (maxParameters < 1)
+            throw new IllegalArgumentException("maxParameters must be positive");
+        this.maxParameters = maxParameters;
+        return this;
+    }
+
+    public InsertBuilder maxBytes(int maxBytes) {
+        if (maxBytes < 1)
+            throw new IllegalArgumentException("maxBytes must be positive");
+        this.maxBytes = maxBytes;
+        return this;
+    }
+
+    public List<BoundSql> buildBoundSql(ParameterStyle parameterStyle) {
+        var statements = new ArrayList<BoundSql>();
+        forEachStatement(parameterStyle, statements::add);
+        return statements;
+    }
+
+    public void forEachStatement(ParameterStyle parameterStyle, Consumer<BoundSql> consumer) {
+        Objects.requireNonNull(parameterStyle, "parameterStyle");
+        if (table == null || columns.isEmpty())
+            throw new IllegalStateException("An insert needs a table and columns");
+        if (columns.size() > maxParameters)
+            throw new IllegalStateException("A row of " + columns.size() + " columns exceeds " + maxParameters + " parameters");
+        if (conflictTarget == null && updateColumns != null)
+            throw new IllegalStateException("doNothing and doUpdate need onConflict");
+        // Without a target there is no constraint to take the excluded values from
+        if (conflictTarget != null && conflictTarget.isEmpty() && updateColumns != null && !updateColumns.isEmpty())
+            throw new IllegalStateException("doUpdate needs an onConflict target");
+
+        var header = header();
+        var conflict = conflictClause();
+        int placeholderLength = parameterStyle == ParameterStyle.POSITIONAL ? 3 : 14;
+        SqlWriter sql = null;
+        int parameters = 0;
+        long bytes = 0;
+        for (Object row : rows) {
+            var values = rowValues.apply(row);
+            if (values.length != columns.size())
+                throw new IllegalArgumentException("Expected " + columns.size() + " values but got " + values.length
+                        + ": " + Arrays.toString(values));
+
+            long rowBytes = 2 + (long) placeholderLength * values.length;
+            for (Object value : values)
+                rowBytes += estimatedSize(value);
+            if (sql != null && (parameters + values.length > maxParameters || bytes + rowBytes > maxBytes)) {
+                consumer.accept(sql.append(conflict).toBoundSql());
+                sql = null;
+            }
+            if (sql == null) {
+                sql = new SqlWriter(new StringBuilder(header.length() + conflict.length() + 64), parameterStyle);
+                sql.append(header);
+                parameters = 0;
+                bytes = header.length() + conflict.length();
+            } else {
+                sql.append(", ");
+            }
+            appendRow(sql, values);
+            parameters += values.length;
+            bytes += rowBytes;
+        }
+        if (sql != null)
+            consumer.accept(sql.append(conflict).toBoundSql());
+    }
+
+    private String header() {
+        return "insert into " + table + " (" + String.join(", ", columns) + ") values ";
+    }
+
+    private String conflictClause() {
+        if (conflictTarget == null)
+            return "";
+        var clause = new StringBuilder(" on conflict");
+        if (!conflictTarget.isEmpty())
+            clause.append(" (").append(String.join(", ", conflictTarget)).append(')');
+        if (updateColumns == null || updateColumns.isEmpty())
+            return clause.append(" do nothing").toString();
+
+        clause.append(" do update set ");
+        for (int i = 0; i < updateColumns.size(); i++) {
+            var column = updateColumns.get(i).trim();
+            clause.append(i == 0 ? "" : ", ").append(column).append(" = excluded.").append(column);
+        }
+        return clause.toString();
+    }
+
+    private static void appendRow(SqlWriter sql, Object[] values) {
+        sql.append('(');
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0)
+                sql.append(", ");
+            sql.appendParameter("value", values[i]);
+        }
+        sql.append(')');
+    }
+
+    private static int estimatedSize(Object value) {
+        if (value instanceof CharSequence)
+            return ((CharSequence) value).length();
+        if (value instanceof byte[])
+            return ((byte[]) value).length;
+        return 8;
+    }
+}
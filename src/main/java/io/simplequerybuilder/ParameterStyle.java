@@ -0,0 +1,12 @@
+package io.simplequerybuilder;
+
+public enum ParameterStyle {
+    /**
+     * Keeps {@code :name} placeholders in the sql and reports every name once, in order of first appearance.
+     */
+    NAMED,
+    /**
+     * Replaces every {@code :name} placeholder with {@code ?} and reports one parameter per placeholder.
+     */
+    POSITIONAL
+}
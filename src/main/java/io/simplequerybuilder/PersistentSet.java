@@ -0,0 +1,111 @@
+package io.simplequerybuilder;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// The elements form a chain of nodes, each set sharing the nodes of the set it was created from. An index of the
+// positions of the elements is shared along the chain, a set contains the elements indexed before its own size.
+// A set that isn't the last one of its index starts an index of its own on top of it.
+final class PersistentSet<E> extends AbstractSet<E> {
+    private static final PersistentSet<?> EMPTY = new PersistentSet<>(null, null, 0, null);
+
+    private final PersistentSet<E> parent;
+    private final E last;
+    private final int size;
+    private final Index index;
+
+    private PersistentSet(PersistentSet<E> parent, E last, int size, Index index) {
+        this.parent = parent;
+        this.last = last;
+        this.size = size;
+        this.index = index;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <E> PersistentSet<E> empty() {
+        return (PersistentSet<E>) EMPTY;
+    }
+
+    static <E> PersistentSet<E> copyOf(Collection<E> elements) {
+        if (elements instanceof PersistentSet<E> set)
+            return set;
+
+        PersistentSet<E> set = empty();
+        for (E element : elements)
+            set = set.with(element);
+        return set;
+    }
+
+    PersistentSet<E> with(E element) {
+        if (contains(element))
+            return this;
+        var index = this.index != null && this.index.size.compareAndSet(size, size + 1)
+                ? this.index
+                : new Index(this.index, size);
+        index.positions.put(element, size);
+        return new PersistentSet<>(this, element, size + 1, index);
+    }
+
+    @Override
+    public boolean contains(Object element) {
+        return index != null && index.contains(element, size);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        var elements = new Object[size];
+        var node = this;
+        for (int i = size - 1; i >= 0; i--, node = node.parent)
+            elements[i] = node.last;
+
+        return new Iterator<>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < elements.length;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public E next() {
+                if (next == elements.length)
+                    throw new NoSuchElementException();
+                return (E) elements[next++];
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private static final class Index {
+        final Index base;
+        final int baseSize;
+        final Map<Object, Integer> positions = new ConcurrentHashMap<>();
+        // The size of the last set that was created on this index
+        final AtomicInteger size;
+
+        Index(Index base, int baseSize) {
+            this.base = base;
+            this.baseSize = baseSize;
+            this.size = new AtomicInteger(baseSize + 1);
+        }
+
+        boolean contains(Object element, int size) {
+            for (var index = this; index != null; size = index.baseSize, index = index.base) {
+                var position = index.positions.get(element);
+                if (position != null && position < size)
+                    return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package io.simplequerybuilder;
+
+final class Placeholders {
+
+    private Placeholders() {
+    }
+
+    /**
+     * Returns the index of the colon of the next {@code :name} placeholder at or after {@code from},
+     * skipping quoted text and {@code ::} casts, or -1 when there is none.
+     */
+    static int next(CharSequence text, int from) {
+        int length = text.length();
+        for (int i = from; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '\'' || c == '"') {
+                i = closingQuote(text, i + 1, c);
+            } else if (c == ':') {
+                if (i + 1 == length)
+                    return -1;
+                char next = text.charAt(i + 1);
+                if (next == ':')
+                    i++;
+                else if (Character.isJavaIdentifierStart(next))
+                    return i;
+            }
+        }
+        return -1;
+    }
+
+    static int nameEnd(CharSequence text, int colon) {
+        int end = colon + 1;
+        while (end < text.length() && Character.isJavaIdentifierPart(text.charAt(end)))
+            end++;
+        return end;
+    }
+
+    static String singleName(String text) {
+        String name = null;
+        for (int colon = next(text, 0); colon >= 0; ) {
+            int end = nameEnd(text, colon);
+            var found = text.substring(colon + 1, end);
+            if (name != null && !name.equals(found))
+                throw new IllegalArgumentException("Expected a single parameter but found :" + name + " and :" + found + " in " + text);
+            name = found;
+            colon = next(text, end);
+        }
+        if (name == null)
+            throw new IllegalArgumentException("No :name parameter found in " + text);
+        return name;
+    }
+
+    static int closingQuote(CharSequence text, int from, char quote) {
+        for (int i = from; i < text.length(); i++) {
+            if (text.charAt(i) == quote) {
+                if (i + 1 < text.length() && text.charAt(i + 1) == quote)
+                    i++;
+                else
+                    return i;
+            }
+        }
+        return text.length();
+    }
+}
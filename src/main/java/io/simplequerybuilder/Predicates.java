@@ -0,0 +1,336 @@
+package io.simplequerybuilder;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+import static io.simplequerybuilder.Spec.AND;
+import static io.simplequerybuilder.Spec.OR;
+
+// Filters form a tree: and(Spec) and or(Spec) nest the filters of the other spec as a group. The tree is
+// simplified right before rendering, nested groups are flattened where the precedence of and over or
+// allows it, and duplicate and always true predicates are dropped. An and-only group is only inlined when none
+// of its predicates has an or outside of parentheses, so Spec.hasTopLevelOr() answers the same for the
+// simplified filters as for the original ones.
+final class Predicates {
+    private static final Pattern EQUALITY = Pattern.compile(
+            "([A-Za-z_][\\w.]*)\\s*=\\s*(:[A-Za-z_]\\w*|-?\\d+(?:\\.\\d+)?|'(?:[^']|'')*')");
+
+    private Predicates() {
+    }
+
+    // Returns null when there is nothing to simplify.
+    static List<SqlFragment> simplify(Collection<SqlFragment> filters, boolean mergeOrEqualities) {
+        if (!mergeOrEqualities && !simplifiable(filters))
+            return null;
+
+        var simplified = new ArrayList<SqlFragment>(filters.size());
+        boolean andOnly = andOnly(filters);
+        boolean changed = false;
+        for (SqlFragment filter : filters) {
+            if (Spec.connectorLength(filter) < 0)
+                return null;
+            if (andOnly && inlinable(filter)) {
+                addInlined(simplified, ((SqlFragment.Group) filter).filters(), mergeOrEqualities);
+                changed = true;
+                continue;
+            }
+            var simplifiedFilter = filter instanceof SqlFragment.Group group ? simplify(group, mergeOrEqualities) : filter;
+            changed |= simplifiedFilter != filter;
+            simplified.add(simplifiedFilter);
+        }
+        // Dropping a predicate can make a group its neighbour inlinable: "a or (b or c) and true"
+        boolean removed;
+        do {
+            changed |= flatten(simplified);
+            removed = removeAlwaysTrue(simplified) | removeDuplicates(simplified, changed);
+        } while (removed);
+        if (mergeOrEqualities)
+            mergeOrEqualities(simplified);
+        return simplified;
+    }
+
+    // Whether simplify() could change a list of filters once the filter is added at the given index, when it
+    // couldn't before. Without a group to inline, only always true predicates and a repeated first predicate
+    // with a different connector ("a = 1 or a = 1") are dropped.
+    static boolean simplifiableWith(SqlFragment first, SqlFragment filter, int index) {
+        if (isAlwaysTrue(filter))
+            return true;
+        if (index == 1 && filter.startsWith(OR) && first instanceof SqlFragment.Group firstGroup
+                && joinedBy(firstGroup.filters(), OR))
+            return true;
+        if (index > 0 && repeats(first, filter))
+            return true;
+        if (!(filter instanceof SqlFragment.Group group))
+            return false;
+        var inner = group.filters();
+        return joinedBy(inner, AND) && noneHasTopLevelOr(inner)
+                || index > 0 && group.startsWith(OR) && joinedBy(inner, OR);
+    }
+
+    private static boolean repeats(SqlFragment first, SqlFragment filter) {
+        int firstConnector = Spec.connectorLength(first);
+        int connector = Spec.connectorLength(filter);
+        // Equal filters with the same connector were never added twice
+        if (firstConnector < 0 || connector < 0 || firstConnector == connector)
+            return false;
+        if (first instanceof SqlFragment.Text firstText && filter instanceof SqlFragment.Text text) {
+            int length = text.text().length() - connector;
+            return firstText.text().length() - firstConnector == length
+                    && firstText.text().regionMatches(firstConnector, text.text(), connector, length);
+        }
+        return first.getClass() == filter.getClass()
+                && filter.equals(withConnector(first, connector == AND.length() ? AND : OR));
+    }
+
+    private static boolean simplifiable(Collection<SqlFragment> filters) {
+        SqlFragment first = null;
+        int index = 0;
+        for (SqlFragment filter : filters) {
+            if (index == 0)
+                first = filter;
+            if (simplifiableWith(first, filter, index++)
+                    || filter instanceof SqlFragment.Group group && simplifiable(group.filters()))
+                return true;
+        }
+        return false;
+    }
+
+    // An and-only group in an and-only list stays and-only when it is simplified, so it is inlined whatever its
+    // filters simplify to. Its filters are added right away, simplifying the group on its own first would copy
+    // and deduplicate them again for every level of a deeply nested spec.
+    private static void addInlined(List<SqlFragment> simplified, List<SqlFragment> filters, boolean mergeOrEqualities) {
+        for (int i = 0; i < filters.size(); i++) {
+            var filter = filters.get(i);
+            if (i == 0 && !filter.startsWith(AND))
+                filter = withConnector(filter, AND);
+            if (inlinable(filter))
+                addInlined(simplified, ((SqlFragment.Group) filter).filters(), mergeOrEqualities);
+            else
+                simplified.add(filter instanceof SqlFragment.Group group ? simplify(group, mergeOrEqualities) : filter);
+        }
+    }
+
+    private static boolean inlinable(SqlFragment filter) {
+        return filter.startsWith(AND) && filter instanceof SqlFragment.Group group && andOnly(group.filters());
+    }
+
+    private static boolean andOnly(Collection<SqlFragment> filters) {
+        var first = true;
+        for (SqlFragment filter : filters) {
+            if (!first && !filter.startsWith(AND) || hasTopLevelOr(filter))
+                return false;
+            first = false;
+        }
+        return true;
+    }
+
+    private static SqlFragment.Group simplify(SqlFragment.Group group, boolean mergeOrEqualities) {
+        var filters = simplify(group.filters(), mergeOrEqualities);
+        return filters == null ? group : new SqlFragment.Group(group.connector(), filters);
+    }
+
+    // An and-only group can always be inlined, unless one of its predicates has an or of its own.
+    // An or-only group can only be inlined into a chain of ors: "a or (b or c) or d".
+    private static boolean flatten(List<SqlFragment> filters) {
+        boolean inlined = false;
+        for (int i = 0; i < filters.size(); i++) {
+            if (!(filters.get(i) instanceof SqlFragment.Group group))
+                continue;
+
+            var inner = group.filters();
+            boolean orChain = i > 0 ? group.startsWith(OR) : filters.size() > 1 && filters.get(1).startsWith(OR);
+            orChain &= i + 1 == filters.size() || filters.get(i + 1).startsWith(OR);
+            if (!(joinedBy(inner, AND) && noneHasTopLevelOr(inner)) && !(orChain && joinedBy(inner, OR)))
+                continue;
+
+            filters.set(i, withConnector(inner.get(0), group.connector()));
+            filters.addAll(i + 1, inner.subList(1, inner.size()));
+            // Only the first inlined predicate gets a new connector, if it is a group it may be inlinable here
+            if (filters.get(i) instanceof SqlFragment.Group)
+                i--;
+            else
+                i += inner.size() - 1;
+            inlined = true;
+        }
+        return inlined;
+    }
+
+    private static boolean noneHasTopLevelOr(List<SqlFragment> filters) {
+        for (int i = 0; i < filters.size(); i++) {
+            if (hasTopLevelOr(filters.get(i)))
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean removeAlwaysTrue(List<SqlFragment> filters) {
+        int size = filters.size();
+        for (int i = filters.size() - 1; i > 0; i--) {
+            if (filters.get(i).startsWith(AND) && isAlwaysTrue(filters.get(i)))
+                filters.remove(i);
+        }
+        while (filters.size() > 1 && filters.get(1).startsWith(AND) && isAlwaysTrue(filters.get(0)))
+            filters.remove(0);
+        return filters.size() < size;
+    }
+
+    // Only in a list with a single kind of connector the order of predicates doesn't matter, and only as long
+    // as no predicate has an or of its own: "a and b or c and a". A list that nothing changed in comes from a set,
+    // so only its first predicate, which has a connector of its own, can repeat.
+    private static boolean removeDuplicates(List<SqlFragment> filters, boolean changed) {
+        if (filters.size() < 2)
+            return false;
+        var connector = filters.get(1).startsWith(AND) ? AND : OR;
+        if (!joinedBy(filters, connector))
+            return false;
+
+        var first = filters.get(0).startsWith(connector) ? filters.get(0) : withConnector(filters.get(0), connector);
+        var seen = changed ? new HashSet<SqlFragment>(filters.size() * 2) : null;
+        if (seen != null)
+            seen.add(first);
+        boolean removed = false;
+        for (int i = 1; i < filters.size(); i++) {
+            var filter = filters.get(i);
+            if (seen != null ? seen.add(filter) : !filter.equals(first))
+                continue;
+            // Checked once a duplicate is found, most lists have none
+            if (!removed && connector == AND && !noneHasTopLevelOr(filters))
+                return false;
+            filters.remove(i--);
+            removed = true;
+        }
+        return removed;
+    }
+
+    // "a = :x or b = 1 or a = :y" becomes "a in (:x, :y) or b = 1", the values keep their placeholders.
+    private static void mergeOrEqualities(List<SqlFragment> filters) {
+        if (filters.size() < 2 || !joinedBy(filters, OR))
+            return;
+
+        var columns = new String[filters.size()];
+        var values = new HashMap<String, List<String>>();
+        for (int i = 0; i < filters.size(); i++) {
+            if (!(filters.get(i) instanceof SqlFragment.Text text))
+                continue;
+            var matcher = EQUALITY.matcher(text.text()).region(Spec.connectorLength(text), text.text().length());
+            if (matcher.matches()) {
+                columns[i] = matcher.group(1);
+                values.computeIfAbsent(columns[i], column -> new ArrayList<>()).add(matcher.group(2));
+            }
+        }
+
+        var merged = new ArrayList<SqlFragment>(filters.size());
+        for (int i = 0; i < filters.size(); i++) {
+            var filter = filters.get(i);
+            if (columns[i] == null) {
+                merged.add(filter);
+                continue;
+            }
+            var columnValues = values.remove(columns[i]);
+            if (columnValues == null)
+                continue;
+            var connector = ((SqlFragment.Text) filter).text().substring(0, Spec.connectorLength(filter));
+            merged.add(columnValues.size() == 1 ? filter
+                    : SqlFragment.text(connector + columns[i] + " in (" + String.join(", ", columnValues) + ")"));
+        }
+        filters.clear();
+        filters.addAll(merged);
+    }
+
+    private static boolean joinedBy(List<SqlFragment> filters, String connector) {
+        for (int i = 1; i < filters.size(); i++) {
+            if (!filters.get(i).startsWith(connector))
+                return false;
+        }
+        return true;
+    }
+
+    static SqlFragment withConnector(SqlFragment filter, String connector) {
+        int skip = Spec.connectorLength(filter);
+        if (filter instanceof SqlFragment.Text text)
+            return new SqlFragment.Text(connector + text.text().substring(skip));
+        if (filter instanceof SqlFragment.SubQuery subQuery)
+            return new SqlFragment.SubQuery(connector + subQuery.prefix().substring(skip), subQuery.subQuery(),
+                    subQuery.suffix());
+        if (filter instanceof SqlFragment.Group group)
+            return new SqlFragment.Group(connector, group.filters());
+        if (filter instanceof SqlFragment.InList inList)
+            return new SqlFragment.InList(connector, inList.column(), inList.values(), inList.expansion());
+        return filter;
+    }
+
+    // Runs for every text predicate on every render, so it scans the text in place instead of copying it.
+    static boolean isAlwaysTrue(SqlFragment filter) {
+        if (!(filter instanceof SqlFragment.Text text))
+            return false;
+        int start = Spec.connectorLength(filter);
+        if (start < 0)
+            return false;
+
+        var sql = text.text();
+        int end = sql.length();
+        while (true) {
+            while (start < end && sql.charAt(start) == ' ')
+                start++;
+            while (end > start && sql.charAt(end - 1) == ' ')
+                end--;
+            if (end - start <= 2 || sql.charAt(start) != '(' || sql.charAt(end - 1) != ')')
+                break;
+            start++;
+            end--;
+        }
+        return matchesIgnoringSpaces(sql, start, end, "1=1") || matchesIgnoringSpaces(sql, start, end, "true");
+    }
+
+    private static boolean matchesIgnoringSpaces(String sql, int start, int end, String expected) {
+        int matched = 0;
+        for (int i = start; i < end; i++) {
+            char c = sql.charAt(i);
+            if (c == ' ')
+                continue;
+            if (matched == expected.length() || Character.toLowerCase(c) != expected.charAt(matched))
+                return false;
+            matched++;
+        }
+        return matched == expected.length();
+    }
+
+    // True when the text of the predicate itself has an or outside of parentheses: "a = 1 or b = 2".
+    static boolean hasTopLevelOr(SqlFragment filter) {
+        if (filter instanceof SqlFragment.Text text)
+            return topLevelOrDepth(text.text(), Math.max(Spec.connectorLength(filter), 0), 0) == FOUND;
+        if (!(filter instanceof SqlFragment.SubQuery subQuery))
+            return false;
+        // The subquery itself is rendered in parentheses, only the text around it counts
+        int depth = topLevelOrDepth(subQuery.prefix(), Math.max(Spec.connectorLength(filter), 0), 0);
+        return depth == FOUND || topLevelOrDepth(subQuery.suffix(), 0, depth) == FOUND;
+    }
+
+    private static final int FOUND = Integer.MIN_VALUE;
+
+    // Returns the parenthesis depth at the end of the text, or FOUND for an or at depth 0.
+    private static int topLevelOrDepth(String sql, int from, int depth) {
+        boolean quoted = false;
+        for (int i = from; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (c == '\'')
+                quoted = !quoted;
+            else if (quoted)
+                continue;
+            else if (c == '(')
+                depth++;
+            else if (c == ')')
+                depth--;
+            else if (depth == 0 && (c == 'o' || c == 'O') && i + 1 < sql.length()
+                    && Character.toLowerCase(sql.charAt(i + 1)) == 'r'
+                    && (i == 0 || !isIdentifierPart(sql.charAt(i - 1)))
+                    && (i + 2 == sql.length() || !isIdentifierPart(sql.charAt(i + 2))))
+                return FOUND;
+        }
+        return depth;
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '.' || c == '"';
+    }
+}
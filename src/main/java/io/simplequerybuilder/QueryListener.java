@@ -0,0 +1,22 @@
+package io.simplequerybuilder;
+
+// Listeners are called on the thread that builds or executes the query and should return quickly. Timings are
+// only measured when a listener other than NOOP is registered.
+public interface QueryListener {
+    QueryListener NOOP = new QueryListener() {
+    };
+
+    default void onBuild(BuildEvent event) {
+    }
+
+    default void onExecution(ExecutionEvent event) {
+    }
+
+    static QueryListener global() {
+        return GlobalQueryListener.listener;
+    }
+
+    static void setGlobal(QueryListener listener) {
+        GlobalQueryListener.listener = listener == null ? NOOP : listener;
+    }
+}
@@ -0,0 +1,76 @@
+package io.simplequerybuilder;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// Keeps timers per query shape, named like meters and tagged with the hex shape fingerprint, so they can be
+// copied into a meter registry. Executions of rendered sql are tagged "unknown".
+public class QueryMetrics implements QueryListener {
+    public static final String BUILD_TIMER = "sql.query.build";
+    public static final String COUNT_BUILD_TIMER = "sql.query.build.count";
+    public static final String EXECUTE_TIMER = "sql.query.execute";
+    public static final String FETCH_TIMER = "sql.query.fetch";
+
+    private final Map<Key, Timer> timers = new ConcurrentHashMap<>();
+
+    @Override
+    public void onBuild(BuildEvent event) {
+        timer(event.countQuery() ? COUNT_BUILD_TIMER : BUILD_TIMER, event.shapeFingerprint())
+                .record(event.renderNanos(), event.length());
+    }
+
+    @Override
+    public void onExecution(ExecutionEvent event) {
+        timer(EXECUTE_TIMER, event.shapeFingerprint()).record(event.executeNanos(), event.failure() == null ? 0 : 1);
+        timer(FETCH_TIMER, event.shapeFingerprint()).record(event.fetchNanos(), event.rows());
+    }
+
+    public Timer timer(String name, long shapeFingerprint) {
+        return timers.computeIfAbsent(new Key(name, tag(shapeFingerprint)), key -> new Timer());
+    }
+
+    public Map<Key, Timer> timers() {
+        return Map.copyOf(timers);
+    }
+
+    public static String tag(long shapeFingerprint) {
+        return shapeFingerprint == 0 ? "unknown" : Long.toHexString(shapeFingerprint);
+    }
+
+    public record Key(String name, String shape) {
+    }
+
+    // The amount is the rendered length for build timers, failures for execute timers and rows for fetch timers.
+    public static final class Timer {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final LongAdder amount = new LongAdder();
+
+        void record(long nanos, long amount) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+            this.amount.add(amount);
+        }
+
+        public long count() {
+            return count.sum();
+        }
+
+        public double totalTime(TimeUnit unit) {
+            return (double) totalNanos.sum() / unit.toNanos(1);
+        }
+
+        public double max(TimeUnit unit) {
+            return (double) maxNanos.get() / unit.toNanos(1);
+        }
+
+        public long amount() {
+            return amount.sum();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package io.simplequerybuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+public class QueryTemplate<T extends BaseQueryBuilder<T>> {
+    private static final int DEFAULT_CACHE_SIZE = 256;
+
+    private final Supplier<T> baseQuery;
+    // Replaced as a whole when a criterion is added, so a build reads criteria and caches that belong together
+    private volatile Shapes<T> shapes = new Shapes<>(List.of());
+    private final int maxCacheSize;
+
+    public QueryTemplate(Supplier<T> baseQuery) {
+        this(baseQuery, DEFAULT_CACHE_SIZE);
+    }
+
+    public QueryTemplate(Supplier<T> baseQuery, int maxCacheSize) {
+        this.baseQuery = baseQuery;
+        this.maxCacheSize = maxCacheSize;
+    }
+
+    public QueryTemplate<T> optional(String filter) {
+        return optional(query -> query.and(filter));
+    }
+
+    public QueryTemplate<T> optional(Spec spec) {
+        return optional(query -> query.and(spec));
+    }
+
+    public synchronized QueryTemplate<T> optional(Consumer<T> criteria) {
+        var optionalCriteria = shapes.optionalCriteria;
+        if (optionalCriteria.size() == Long.SIZE)
+            throw new IllegalStateException("A query template supports at most " + Long.SIZE + " optional criteria");
+        var added = new ArrayList<>(optionalCriteria);
+        added.add(criteria);
+        shapes = new Shapes<>(List.copyOf(added));
+        return this;
+    }
+
+    public String buildSql(boolean... conditions) {
+        var shapes = this.shapes;
+        return cached(shapes, shapes.sqlCache, mask(shapes, conditions), false);
+    }
+
+    public String buildCountSql(boolean... conditions) {
+        var shapes = this.shapes;
+        return cached(shapes, shapes.countSqlCache, mask(shapes, conditions), true);
+    }
+
+    public String buildSql(long conditionMask) {
+        var shapes = this.shapes;
+        return cached(shapes, shapes.sqlCache, conditionMask, false);
+    }
+
+    public String buildCountSql(long conditionMask) {
+        var shapes = this.shapes;
+        return cached(shapes, shapes.countSqlCache, conditionMask, true);
+    }
+
+    public T create(long conditionMask) {
+        return create(shapes, conditionMask);
+    }
+
+    private T create(Shapes<T> shapes, long conditionMask) {
+        var optionalCriteria = shapes.optionalCriteria;
+        var query = baseQuery.get();
+        for (int i = 0; i < optionalCriteria.size(); i++) {
+            if ((conditionMask & (1L << i)) != 0)
+                optionalCriteria.get(i).accept(query);
+        }
+        return query;
+    }
+
+    public int cachedShapes() {
+        var shapes = this.shapes;
+        return shapes.sqlCache.size() + shapes.countSqlCache.size();
+    }
+
+    private String cached(Shapes<T> shapes, Map<Long, String> cache, long conditionMask, boolean countQuery) {
+        int criteria = shapes.optionalCriteria.size();
+        if (criteria < Long.SIZE)
+            conditionMask &= (1L << criteria) - 1;
+
+        var sql = cache.get(conditionMask);
+        if (sql != null)
+            return sql;
+
+        var query = create(shapes, conditionMask);
+        sql = countQuery ? query.buildCountSql() : query.buildSql();
+        if (cache.size() < maxCacheSize) {
+            var existing = cache.putIfAbsent(conditionMask, sql);
+            if (existing != null)
+                return existing;
+        }
+        return sql;
+    }
+
+    private static long mask(Shapes<?> shapes, boolean... conditions) {
+        int criteria = shapes.optionalCriteria.size();
+        if (conditions.length > criteria)
+            throw new IllegalArgumentException("Expected at most " + criteria + " conditions but got " + conditions.length);
+
+        long mask = 0;
+        for (int i = 0; i < conditions.length; i++) {
+            if (conditions[i])
+                mask |= 1L << i;
+        }
+        return mask;
+    }
+
+    private static final class Shapes<T> {
+        final List<Consumer<T>> optionalCriteria;
+        final Map<Long, String> sqlCache = new ConcurrentHashMap<>();
+        final Map<Long, String> countSqlCache = new ConcurrentHashMap<>();
+
+        Shapes(List<Consumer<T>> optionalCriteria) {
+            this.optionalCriteria = optionalCriteria;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package io.simplequerybuilder;
+
+import java.util.Locale;
+
+// nullsFirst is null when the order by doesn't say where nulls go. Databases disagree on that default: PostgreSQL
+// and Oracle sort nulls as the highest value, H2, MySQL and SQL Server as the lowest.
+public record SortColumn(String expression, boolean descending, Boolean nullsFirst) {
+
+    public SortColumn(String expression, boolean descending) {
+        this(expression, descending, null);
+    }
+
+    static SortColumn parse(String orderBy) {
+        var expression = orderBy.trim();
+        var lowerCase = expression.toLowerCase(Locale.ROOT);
+        Boolean nullsFirst = null;
+        for (String nulls : new String[]{" nulls first", " nulls last"}) {
+            if (lowerCase.endsWith(nulls)) {
+                nullsFirst = nulls.equals(" nulls first");
+                expression = expression.substring(0, expression.length() - nulls.length()).trim();
+                lowerCase = lowerCase.substring(0, expression.length());
+            }
+        }
+
+        boolean descending = false;
+        if (lowerCase.endsWith(" desc")) {
+            expression = expression.substring(0, expression.length() - " desc".length()).trim();
+            descending = true;
+        } else if (lowerCase.endsWith(" asc")) {
+            expression = expression.substring(0, expression.length() - " asc".length()).trim();
+        }
+        return new SortColumn(expression, descending, nullsFirst);
+    }
+}
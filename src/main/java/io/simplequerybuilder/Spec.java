@@ -1,85 +1,304 @@
 package io.simplequerybuilder;
 
-import java.util.Collection;
-import java.util.LinkedHashSet;
-import java.util.Set;
+import java.util.*;
 
-public class Spec {
+public class Spec implements Cloneable {
 
-    protected final Set<String> where = new LinkedHashSet<>();
-    protected final Set<String> joins = new LinkedHashSet<>();
+    static final String AND = "and ";
+    static final String OR = "or ";
+    static final int WHERE = 1;
+    static final int JOINS = 1 << 1;
+    static final int PARAMETERS = 1 << 2;
+
+    Set<SqlFragment> where;
+    Set<SqlFragment> joins;
+    Map<String, Object> parameters;
+    private int whereLength;
+    private int joinsLength;
+    // Whether simplifying could change the filters, see Predicates.simplifiableWith()
+    private boolean simplifiable;
+    private SqlFragment firstFilter;
+    private int sharedClauses;
+
+    public Spec() {
+        this(new LinkedHashSet<>(), new LinkedHashSet<>());
+    }
+
+    Spec(Set<SqlFragment> where, Set<SqlFragment> joins) {
+        this.where = where;
+        this.joins = joins;
+    }
 
 
     public Spec join(String joinStatement) {
-        joins.add(joinStatement.trim());
+        addJoin(SqlFragment.text(joinStatement.trim()));
         return this;
     }
 
     public Spec innerJoin(String joinStatement) {
-        joins.add("inner join " + joinStatement.trim());
+        addJoin(SqlFragment.text("inner join " + joinStatement.trim()));
         return this;
     }
 
     public Spec leftJoin(String joinStatement) {
-        joins.add("left join " + joinStatement.trim());
+        addJoin(SqlFragment.text("left join " + joinStatement.trim()));
+        return this;
+    }
+
+    public Spec leftJoinToOne(String joinStatement) {
+        addJoin(toOneJoin("left join ", joinStatement));
         return this;
     }
 
+    public Spec innerJoinToOne(String joinStatement) {
+        addJoin(toOneJoin("inner join ", joinStatement));
+        return this;
+    }
+
+    static SqlFragment toOneJoin(String prefix, String joinStatement) {
+        var trimmed = joinStatement.trim();
+        return SqlFragment.toOneJoin(SqlFragment.text(prefix + trimmed), CountQueryOptimizer.aliasOf(trimmed),
+                prefix.startsWith("left"));
+    }
+
     public Spec and(String filter) {
-        where.add("and %s".formatted(filter));
+        addFilter(SqlFragment.text(AND + filter.trim()));
         return this;
     }
 
     public Spec where(String filter) {
-        where.add("and %s".formatted(filter.trim()));
+        addFilter(SqlFragment.text(AND + filter.trim()));
         return this;
     }
 
     public Spec or(String filter) {
-        where.add("or %s".formatted(filter.trim()));
+        addFilter(SqlFragment.text(OR + filter.trim()));
+        return this;
+    }
+
+    public Spec and(String filter, Object value) {
+        bind(Placeholders.singleName(filter), value);
+        return and(filter);
+    }
+
+    public Spec where(String filter, Object value) {
+        bind(Placeholders.singleName(filter), value);
+        return where(filter);
+    }
+
+    public Spec or(String filter, Object value) {
+        bind(Placeholders.singleName(filter), value);
+        return or(filter);
+    }
+
+    public Spec bind(String name, Object value) {
+        if (unshare(PARAMETERS) && parameters != null)
+            parameters = new LinkedHashMap<>(parameters);
+        if (parameters == null)
+            parameters = new LinkedHashMap<>();
+        bindParameter(parameters, name, value);
         return this;
     }
 
+    static void bindParameter(Map<String, Object> parameters, String name, Object value) {
+        if (parameters.containsKey(name) && !Objects.equals(parameters.get(name), value))
+            throw new IllegalArgumentException("Parameter :" + name + " is already bound to a different value");
+        parameters.put(name, value);
+    }
+
     public Spec and(Spec spec) {
         mergeSpecs(spec);
-        if (!spec.where.isEmpty())
-            and("(%s)".formatted(spec.buildFilterStatements().trim()));
+        addGroup(spec, AND);
         return this;
     }
 
     public Spec append(String filter) {
-        where.add(filter.trim());
+        addFilter(SqlFragment.text(filter.trim()));
         return this;
     }
 
     private void mergeSpecs(Spec spec) {
-        joins.addAll(spec.joins);
+        for (SqlFragment join : spec.joins)
+            addJoin(join);
+        if (spec.parameters != null) {
+            for (var parameter : spec.parameters.entrySet())
+                bind(parameter.getKey(), parameter.getValue());
+        }
+    }
+
+    void addJoin(SqlFragment joinStatement) {
+        if (unshare(JOINS))
+            joins = new LinkedHashSet<>(joins);
+        if (joins.add(joinStatement))
+            joinsLength += joinStatement.estimatedLength() + 1;
+    }
+
+    void addFilter(SqlFragment filter) {
+        if (unshare(WHERE))
+            where = new LinkedHashSet<>(where);
+        if (where.add(filter)) {
+            whereLength += filter.estimatedLength() + 1;
+            if (where.size() == 1)
+                firstFilter = filter;
+            simplifiable |= Predicates.simplifiableWith(firstFilter, filter, where.size() - 1);
+        }
+    }
+
+    void groupWhere() {
+        var group = group(AND);
+        if (group == null)
+            return;
+        unshare(WHERE);
+        where = new LinkedHashSet<>();
+        whereLength = 0;
+        addFilter(group);
+    }
+
+    // The filters of the group are simplified along with the filters of this spec.
+    private void addGroup(Spec spec, String connector) {
+        var group = spec.group(connector);
+        if (group == null)
+            return;
+        simplifiable |= spec.simplifiable();
+        addFilter(group);
+    }
+
+    // A spec starting with an appended filter has no connector to group on. Dropping its filters could drop
+    // a tenant filter, so it is rejected.
+    SqlFragment group(String connector) {
+        if (where.isEmpty())
+            return null;
+        var first = where.iterator().next();
+        if (connectorLength(first) < 0)
+            throw new IllegalArgumentException("Can't compose a spec starting with an appended filter: "
+                    + rendered(List.of(first)).get(0));
+        return SqlFragment.group(connector, List.copyOf(where));
+    }
+
+    // Filters and-ed to a spec with a top level or only bind to its last alternative.
+    // Also true for a single filter like "a = 1 or b = 2": a filter and-ed after it would only apply to b = 2.
+    public boolean hasTopLevelOr() {
+        var first = true;
+        for (SqlFragment filter : where) {
+            if (!first && filter.startsWith(OR) || Predicates.hasTopLevelOr(filter))
+                return true;
+            first = false;
+        }
+        return false;
+    }
+
+    // The fork shares every clause with this spec, whichever of the two changes a clause first copies it.
+    public Spec fork() {
+        sharedClauses = -1;
+        try {
+            return (Spec) clone();
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    // Returns true once per fork for a clause still shared with it, the caller then copies the clause.
+    final boolean unshare(int clause) {
+        if ((sharedClauses & clause) == 0)
+            return false;
+        sharedClauses &= ~clause;
+        return true;
+    }
+
+    public FrozenSpec freeze() {
+        return new FrozenSpec(PersistentSet.copyOf(where), PersistentSet.copyOf(joins), FrozenSpec.frozen(parameters));
+    }
+
+    int estimatedLength() {
+        return whereLength + joinsLength;
     }
 
 
     public String buildFilterStatements() {
-        return buildFilterStatements(where);
+        var sql = new SqlWriter(new StringBuilder(whereLength));
+        if (!appendFilterStatements(sql))
+            return null;
+
+        return sql.toString();
     }
 
     protected String buildFilterStatements(Collection<String> criteria) {
-        String escaped = null;
-        var filters = String.join(" ", criteria);
-        if (filters.startsWith("and "))
-            escaped = " " + filters.substring("and ".length());
+        var filters = new ArrayList<SqlFragment>(criteria.size());
+        for (String filter : criteria)
+            filters.add(SqlFragment.text(filter));
+        var sql = new SqlWriter(new StringBuilder());
+        return appendFilters(sql, filters, true) ? sql.toString() : null;
+    }
 
-        if (filters.startsWith("or "))
-            escaped = " " + filters.substring("or ".length());
+    // Read only views of the filters ("and ...", "or ...") and joins as they are rendered.
+    protected List<String> whereStatements() {
+        return rendered(where);
+    }
 
-        if (escaped == null)
-            return null;
+    protected List<String> joinStatements() {
+        return rendered(joins);
+    }
+
+    private static List<String> rendered(Collection<SqlFragment> fragments) {
+        var statements = new ArrayList<String>(fragments.size());
+        for (SqlFragment fragment : fragments) {
+            var sql = new SqlWriter(new StringBuilder(fragment.estimatedLength()));
+            fragment.appendTo(sql, 0);
+            statements.add(sql.toString());
+        }
+        return Collections.unmodifiableList(statements);
+    }
+
+    boolean appendFilterStatements(SqlWriter sql) {
+        return appendWhere(sql, true);
+    }
+
+    boolean appendWhere(SqlWriter sql, boolean leadingSpace) {
+        if (!simplifiable() && !sql.mergesOrEqualities())
+            return appendSimplified(sql, where, leadingSpace);
+        return appendFilters(sql, where, leadingSpace);
+    }
+
+    boolean simplifiable() {
+        return simplifiable;
+    }
+
+    static boolean appendFilters(SqlWriter sql, Collection<SqlFragment> filters, boolean leadingSpace) {
+        var simplified = Predicates.simplify(filters, sql.mergesOrEqualities());
+        return appendSimplified(sql, simplified != null ? simplified : filters, leadingSpace);
+    }
+
+    // Groups are simplified along with the list they are in, so they render their filters as they are.
+    static boolean appendSimplified(SqlWriter sql, Collection<SqlFragment> filters, boolean leadingSpace) {
+        var first = true;
+        for (SqlFragment filter : filters) {
+            if (first) {
+                int connectorLength = connectorLength(filter);
+                if (connectorLength < 0)
+                    return false;
+                if (leadingSpace)
+                    sql.append(' ');
+                filter.appendPredicateTo(sql, connectorLength);
+                first = false;
+            } else {
+                sql.append(' ');
+                filter.appendPredicateTo(sql, 0);
+            }
+        }
+        return !first;
+    }
 
-        return escaped;
+    static int connectorLength(SqlFragment filter) {
+        if (filter.startsWith(AND))
+            return AND.length();
+        if (filter.startsWith(OR))
+            return OR.length();
+        return -1;
     }
 
     protected Spec or(Spec spec) {
         mergeSpecs(spec);
-        if (!spec.where.isEmpty())
-            or("(%s)".formatted(spec.buildFilterStatements()));
+        addGroup(spec, OR);
         return this;
     }
 
@@ -0,0 +1,244 @@
+package io.simplequerybuilder;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+interface SqlFragment {
+
+    void appendTo(SqlWriter sql, int skip);
+
+    // Filters render through here, so text predicates can have their literals parameterized.
+    default void appendPredicateTo(SqlWriter sql, int skip) {
+        appendTo(sql, skip);
+    }
+
+    int estimatedLength();
+
+    boolean startsWith(String prefix);
+
+    void fingerprint(Fingerprint fingerprint);
+
+    default void forEachSubQuery(Consumer<SubQuery> action) {
+    }
+
+    static SqlFragment text(String text) {
+        return new Text(text);
+    }
+
+    static SqlFragment subQuery(String prefix, BaseQueryBuilder<?> subQuery, String suffix) {
+        return new SubQuery(prefix, subQuery, suffix);
+    }
+
+    static SqlFragment inList(String connector, String column, List<Object> values, InListExpansion expansion) {
+        return new InList(connector, column, values, expansion);
+    }
+
+    static SqlFragment toOneJoin(SqlFragment join, String alias, boolean optional) {
+        return new ToOneJoin(join, alias, optional);
+    }
+
+    static SqlFragment group(String connector, List<SqlFragment> filters) {
+        return new Group(connector, filters);
+    }
+
+    record Text(String text) implements SqlFragment {
+        @Override
+        public void appendTo(SqlWriter sql, int skip) {
+            sql.append(text, skip);
+        }
+
+        @Override
+        public void appendPredicateTo(SqlWriter sql, int skip) {
+            sql.appendPredicate(text, skip);
+        }
+
+        @Override
+        public int estimatedLength() {
+            return text.length();
+        }
+
+        @Override
+        public boolean startsWith(String prefix) {
+            return text.startsWith(prefix);
+        }
+
+        @Override
+        public void fingerprint(Fingerprint fingerprint) {
+            fingerprint.add(text);
+        }
+    }
+
+    record SubQuery(String prefix, BaseQueryBuilder<?> subQuery, String suffix) implements SqlFragment {
+        @Override
+        public void appendTo(SqlWriter sql, int skip) {
+            sql.append(prefix, skip)
+                    .append('(')
+                    .appendSubQuery(subQuery)
+                    .append(')')
+                    .append(suffix);
+        }
+
+        @Override
+        public int estimatedLength() {
+            return prefix.length() + subQuery.estimatedLength() + suffix.length() + 2;
+        }
+
+        @Override
+        public boolean startsWith(String prefix) {
+            return this.prefix.startsWith(prefix);
+        }
+
+        @Override
+        public void fingerprint(Fingerprint fingerprint) {
+            fingerprint.add(prefix).add('(');
+            subQuery.fingerprint(fingerprint);
+            fingerprint.add(')').add(suffix);
+        }
+
+        @Override
+        public void forEachSubQuery(Consumer<SubQuery> action) {
+            action.accept(this);
+        }
+
+        boolean lateral() {
+            return prefix.endsWith("lateral ");
+        }
+    }
+
+    // The length and the hash are kept, so adding a group of nested groups doesn't walk all of them again.
+    record Group(String connector, List<SqlFragment> filters, int estimatedLength, int hash) implements SqlFragment {
+        Group(String connector, List<SqlFragment> filters) {
+            this(connector, filters, estimatedLength(connector, filters), 31 * connector.hashCode() + filters.hashCode());
+        }
+
+        private static int estimatedLength(String connector, List<SqlFragment> filters) {
+            int length = connector.length() + 2;
+            for (int i = 0; i < filters.size(); i++)
+                length += filters.get(i).estimatedLength() + 1;
+            return length;
+        }
+
+        @Override
+        public void appendTo(SqlWriter sql, int skip) {
+            sql.append(connector, skip).append('(');
+            Spec.appendSimplified(sql, filters, false);
+            sql.append(')');
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean startsWith(String prefix) {
+            return connector.startsWith(prefix);
+        }
+
+        @Override
+        public void fingerprint(Fingerprint fingerprint) {
+            fingerprint.add(connector).add('(');
+            for (SqlFragment filter : filters)
+                filter.fingerprint(fingerprint);
+            fingerprint.add(')');
+        }
+
+        @Override
+        public void forEachSubQuery(Consumer<SubQuery> action) {
+            for (SqlFragment filter : filters)
+                filter.forEachSubQuery(action);
+        }
+    }
+
+    record InList(String connector, String column, List<Object> values, InListExpansion expansion) implements SqlFragment {
+        @Override
+        public void appendTo(SqlWriter sql, int skip) {
+            sql.append(connector, skip);
+            if (values.isEmpty()) {
+                sql.append("1 = 0");
+                return;
+            }
+            if (expansion.isAnyArray()) {
+                sql.append(column).append(" = any(").appendParameter("inList", values.toArray()).append(')');
+                return;
+            }
+
+            int chunks = (values.size() - 1) / expansion.maxChunkSize() + 1;
+            if (chunks > 1)
+                sql.append('(');
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                int from = chunk * expansion.maxChunkSize();
+                int to = Math.min(from + expansion.maxChunkSize(), values.size());
+                if (chunk > 0)
+                    sql.append(" or ");
+                sql.append(column).append(" in (");
+                int placeholders = expansion.placeholders(to - from);
+                for (int i = 0; i < placeholders; i++) {
+                    if (i > 0)
+                        sql.append(", ");
+                    sql.appendParameter("inList", values.get(Math.min(from + i, to - 1)));
+                }
+                sql.append(')');
+            }
+            if (chunks > 1)
+                sql.append(')');
+        }
+
+        @Override
+        public int estimatedLength() {
+            if (expansion.isAnyArray())
+                return connector.length() + column.length() + 20;
+            return connector.length() + (column.length() + 8) * (values.size() / expansion.maxChunkSize() + 1)
+                    + values.size() * 14;
+        }
+
+        @Override
+        public boolean startsWith(String prefix) {
+            return connector.startsWith(prefix);
+        }
+
+        @Override
+        public void fingerprint(Fingerprint fingerprint) {
+            fingerprint.add(connector).add(column);
+            if (expansion.isAnyArray()) {
+                fingerprint.add('a');
+                return;
+            }
+            fingerprint.add('i');
+            if (fingerprint.normalizesLiterals())
+                return;
+            for (int from = 0; from < values.size(); from += expansion.maxChunkSize())
+                fingerprint.add(expansion.placeholders(Math.min(expansion.maxChunkSize(), values.size() - from)));
+        }
+    }
+
+    // An optional to-one join is a left join, it can't drop rows either. An inner one can, so it is always counted.
+    record ToOneJoin(SqlFragment join, String alias, boolean optional) implements SqlFragment {
+        @Override
+        public void appendTo(SqlWriter sql, int skip) {
+            join.appendTo(sql, skip);
+        }
+
+        @Override
+        public int estimatedLength() {
+            return join.estimatedLength();
+        }
+
+        @Override
+        public boolean startsWith(String prefix) {
+            return join.startsWith(prefix);
+        }
+
+        @Override
+        public void fingerprint(Fingerprint fingerprint) {
+            // A to-one join can be dropped from the count query, a plain join with the same text can't
+            fingerprint.add(optional ? '1' : '2');
+            join.fingerprint(fingerprint);
+        }
+
+        @Override
+        public void forEachSubQuery(Consumer<SubQuery> action) {
+            join.forEachSubQuery(action);
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package io.simplequerybuilder;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+final class SqlWriter {
+    private final StringBuilder sql;
+    // Null for plain sql, so writers without parameters stay small.
+    private final Bindings bindings;
+    private Map<BaseQueryBuilder<?>, RenderedSubQuery> renderedSubQueries;
+    // Pairs of query and name, a query defined again by an inner with clause is found first.
+    private List<Object> withNames;
+    private int generatedParameters;
+    private boolean omitSubQueryOrdering;
+    private boolean mergeOrEqualities;
+    private boolean parameterizeLiterals;
+
+    SqlWriter(StringBuilder sql) {
+        this(sql, null);
+    }
+
+    SqlWriter(StringBuilder sql, ParameterStyle parameterStyle) {
+        this.sql = sql;
+        bindings = parameterStyle == null ? null : new Bindings(parameterStyle);
+    }
+
+    SqlWriter append(String text) {
+        return append(text, 0);
+    }
+
+    SqlWriter append(String text, int start) {
+        if (bindings == null || text.indexOf(':', start) < 0)
+            sql.append(text, start, text.length());
+        else
+            appendWithParameters(text, start);
+        return this;
+    }
+
+    // Predicates may have their literals replaced by generated parameters, see parameterizeLiterals(boolean).
+    SqlWriter appendPredicate(String text, int start) {
+        if (!parameterizeLiterals || bindings == null)
+            return append(text, start);
+        appendWithLiterals(text, start);
+        return this;
+    }
+
+    SqlWriter append(char c) {
+        sql.append(c);
+        return this;
+    }
+
+    SqlWriter append(long number) {
+        sql.append(number);
+        return this;
+    }
+
+    int length() {
+        return sql.length();
+    }
+
+    void setLength(int length) {
+        sql.setLength(length);
+    }
+
+    char charAt(int index) {
+        return sql.charAt(index);
+    }
+
+    // A subquery is rendered once per build. Later references copy the text already written to the
+    // buffer, so nothing before a rendered subquery may be removed while the build is running.
+    // A reference under other parameter scopes may bind other values, so it renders the subquery again.
+    SqlWriter appendSubQuery(BaseQueryBuilder<?> subQuery) {
+        var withName = withName(subQuery);
+        if (withName != null) {
+            sql.append("select * from ").append(withName);
+            return this;
+        }
+
+        if (renderedSubQueries == null)
+            renderedSubQueries = new IdentityHashMap<>();
+
+        var rendered = renderedSubQueries.get(subQuery);
+        if (rendered != null && sameScopes(rendered.scopes())) {
+            sql.append(sql, rendered.start(), rendered.end());
+            if (positional()) {
+                for (int i = rendered.firstParameter(); i < rendered.endParameter(); i++) {
+                    bindings.names.add(bindings.names.get(i));
+                    bindings.values.add(bindings.values.get(i));
+                }
+            }
+            return this;
+        }
+
+        int start = sql.length();
+        int firstParameter = parameterCount();
+        subQuery.appendSql(this, false, true);
+        renderedSubQueries.put(subQuery, new RenderedSubQuery(start, sql.length(), firstParameter, parameterCount(),
+                bindings == null ? List.of() : new ArrayList<>(bindings.scopes)));
+        return this;
+    }
+
+    private boolean sameScopes(List<Map<String, Object>> scopes) {
+        if (bindings == null)
+            return true;
+        if (scopes.size() != bindings.scopes.size())
+            return false;
+        for (int i = 0; i < scopes.size(); i++) {
+            if (scopes.get(i) != bindings.scopes.get(i))
+                return false;
+        }
+        return true;
+    }
+
+    // Queries defined in a with clause are referenced by name until the statement that defines them is rendered.
+    void defineWith(BaseQueryBuilder<?> query, String name) {
+        if (withNames == null)
+            withNames = new ArrayList<>();
+        withNames.add(query);
+        withNames.add(name);
+    }
+
+    void endWith(int definitions) {
+        for (int i = 0; i < definitions; i++) {
+            withNames.remove(withNames.size() - 1);
+            withNames.remove(withNames.size() - 1);
+        }
+    }
+
+    private String withName(BaseQueryBuilder<?> query) {
+        if (withNames != null)
+            for (int i = withNames.size() - 2; i >= 0; i -= 2)
+                if (withNames.get(i) == query)
+                    return (String) withNames.get(i + 1);
+        return null;
+    }
+
+    int subQueryCount() {
+        return renderedSubQueries == null ? 0 : renderedSubQueries.size();
+    }
+
+    // Generated names are numbered in rendering order, so the same query shape always gets the same names.
+    SqlWriter appendParameter(String prefix, Object value) {
+        var name = prefix + ++generatedParameters;
+        if (positional())
+            sql.append('?');
+        else
+            sql.append(':').append(name);
+        if (bindings != null) {
+            bindings.names.add(name);
+            bindings.values.add(value);
+        }
+        return this;
+    }
+
+    // Count queries don't need the order of unpaged subqueries.
+    boolean omitSubQueryOrdering(boolean omit) {
+        var previous = omitSubQueryOrdering;
+        omitSubQueryOrdering = omit;
+        return previous;
+    }
+
+    boolean omitsSubQueryOrdering() {
+        return omitSubQueryOrdering;
+    }
+
+    boolean mergeOrEqualities(boolean merge) {
+        var previous = mergeOrEqualities;
+        mergeOrEqualities = merge;
+        return previous;
+    }
+
+    boolean mergesOrEqualities() {
+        return mergeOrEqualities;
+    }
+
+    // Only writers with a parameter style can return the values, plain sql keeps its literals.
+    boolean parameterizeLiterals(boolean parameterize) {
+        var previous = parameterizeLiterals;
+        parameterizeLiterals = parameterize;
+        return previous;
+    }
+
+    void enterScope(Map<String, Object> parameters) {
+        if (bindings != null)
+            bindings.scopes.add(parameters);
+    }
+
+    void exitScope() {
+        if (bindings != null)
+            bindings.scopes.remove(bindings.scopes.size() - 1);
+    }
+
+    BoundSql toBoundSql() {
+        return new BoundSql(sql.toString(), List.copyOf(bindings.names), bindings.values.toArray());
+    }
+
+    // Named writers keep track of the names they have bound, positional ones don't.
+    private boolean positional() {
+        return bindings != null && bindings.named == null;
+    }
+
+    private int parameterCount() {
+        return bindings == null ? 0 : bindings.values.size();
+    }
+
+    private void appendWithParameters(String text, int start) {
+        int colon = Placeholders.next(text, start);
+        while (colon >= 0) {
+            int end = Placeholders.nameEnd(text, colon);
+            var name = text.substring(colon + 1, end);
+            var value = lookup(name);
+            if (positional())
+                sql.append(text, start, colon).append('?');
+            else
+                sql.append(text, start, end);
+            addParameter(name, value);
+
+            start = end;
+            colon = Placeholders.next(text, start);
+        }
+        sql.append(text, start, text.length());
+    }
+
+    // Numbers and quoted strings become parameters. Typed literals (date '2024-01-01'), numbers that are
+    // part of a name (t1.id) and sole function arguments (count(1)) are kept.
+    private void appendWithLiterals(String text, int start) {
+        int copied = start;
+        int length = text.length();
+        for (int i = start; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '"') {
+                i = Placeholders.closingQuote(text, i + 1, c);
+            } else if (c == ':' && i + 1 < length && text.charAt(i + 1) == ':') {
+                i = Placeholders.nameEnd(text, i + 1) - 1;
+            } else if (c == ':' && i + 1 < length && Character.isJavaIdentifierStart(text.charAt(i + 1))) {
+                append(text.substring(copied, Placeholders.nameEnd(text, i)));
+                copied = Placeholders.nameEnd(text, i);
+                i = copied - 1;
+            } else if (c == '\'' && !typedLiteral(text, i)) {
+                int end = Placeholders.closingQuote(text, i + 1, c);
+                if (end == length)
+                    break;
+                sql.append(text, copied, i);
+                appendParameter("literal", text.substring(i + 1, end).replace("''", "'"));
+                copied = end + 1;
+                i = end;
+            } else if (c == '\'') {
+                i = Placeholders.closingQuote(text, i + 1, c);
+            } else if (c == '(' && typeModifiers(text, i)) {
+                int end = text.indexOf(')', i);
+                i = end < 0 ? length - 1 : end;
+            } else if (Character.isDigit(c) && (i == 0 || !isNamePart(text.charAt(i - 1)))) {
+                int end = i;
+                while (end < length && Character.isDigit(text.charAt(end)))
+                    end++;
+                if (end + 1 < length && text.charAt(end) == '.' && Character.isDigit(text.charAt(end + 1))) {
+                    end++;
+                    while (end < length && Character.isDigit(text.charAt(end)))
+                        end++;
+                }
+                if ((end == length || !isNamePart(text.charAt(end))) && !soleArgument(text, i, end)) {
+                    sql.append(text, copied, i);
+                    appendParameter("literal", number(text.substring(i, end)));
+                    copied = end;
+                }
+                i = end - 1;
+            }
+        }
+        sql.append(text, copied, length);
+    }
+
+    private static boolean typedLiteral(String text, int quote) {
+        int end = quote;
+        while (end > 0 && text.charAt(end - 1) == ' ')
+            end--;
+        int begin = end;
+        while (begin > 0 && isNamePart(text.charAt(begin - 1)))
+            begin--;
+        if (begin == end)
+            return false;
+        return switch (text.substring(begin, end).toLowerCase(Locale.ROOT)) {
+            case "and", "or", "not", "like", "ilike", "between", "when", "then", "else" -> false;
+            default -> true;
+        };
+    }
+
+    // The parentheses after the type of a cast hold its size and scale: "::numeric(10, 2)", "as varchar(20)" or
+    // "as character varying(20)".
+    private static boolean typeModifiers(String text, int parenthesis) {
+        int end = parenthesis;
+        for (int words = 0; words < 3; words++) {
+            while (end > 0 && text.charAt(end - 1) == ' ')
+                end--;
+            int begin = end;
+            while (begin > 0 && Character.isJavaIdentifierPart(text.charAt(begin - 1)))
+                begin--;
+            if (begin == end)
+                return false;
+            if (words > 0 && end - begin == 2 && text.regionMatches(true, begin, "as", 0, 2))
+                return begin == 0 || text.charAt(begin - 1) == ' ' || text.charAt(begin - 1) == ')';
+            if (begin > 1 && text.charAt(begin - 1) == ':' && text.charAt(begin - 2) == ':')
+                return words == 0;
+            end = begin;
+        }
+        return false;
+    }
+
+    private static boolean soleArgument(String text, int start, int end) {
+        while (start > 0 && text.charAt(start - 1) == ' ')
+            start--;
+        while (end < text.length() && text.charAt(end) == ' ')
+            end++;
+        if (start < 2 || end == text.length() || text.charAt(start - 1) != '(' || text.charAt(end) != ')')
+            return false;
+        int name = start - 1;
+        while (name > 0 && isNamePart(text.charAt(name - 1)))
+            name--;
+        return name < start - 1 && !text.substring(name, start - 1).equalsIgnoreCase("in");
+    }
+
+    private static boolean isNamePart(char c) {
+        return Character.isJavaIdentifierPart(c) || c == '.';
+    }
+
+    private static Object number(String literal) {
+        if (literal.indexOf('.') >= 0 || literal.length() > 18)
+            return new BigDecimal(literal);
+        long value = Long.parseLong(literal);
+        if (value == (int) value)
+            return (int) value;
+        return value;
+    }
+
+    private Object lookup(String name) {
+        for (int i = bindings.scopes.size() - 1; i >= 0; i--) {
+            var parameters = bindings.scopes.get(i);
+            if (parameters != null && parameters.containsKey(name))
+                return parameters.get(name);
+        }
+        throw new IllegalStateException("No value bound for parameter :" + name);
+    }
+
+    private void addParameter(String name, Object value) {
+        if (bindings.named != null) {
+            var index = bindings.named.putIfAbsent(name, bindings.values.size());
+            if (index != null) {
+                if (!Objects.equals(bindings.values.get(index), value))
+                    throw new IllegalStateException("Parameter :" + name + " is bound to different values");
+                return;
+            }
+        }
+        bindings.names.add(name);
+        bindings.values.add(value);
+    }
+
+    @Override
+    public String toString() {
+        return sql.toString();
+    }
+
+    private record RenderedSubQuery(int start, int end, int firstParameter, int endParameter,
+                                    List<Map<String, Object>> scopes) {
+    }
+
+    private static final class Bindings {
+        final List<String> names = new ArrayList<>();
+        final List<Object> values = new ArrayList<>();
+        final List<Map<String, Object>> scopes = new ArrayList<>(2);
+        final Map<String, Integer> named;
+
+        Bindings(ParameterStyle parameterStyle) {
+            named = parameterStyle == ParameterStyle.NAMED ? new HashMap<>() : null;
+        }
+    }
+}
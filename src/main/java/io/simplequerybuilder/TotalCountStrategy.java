@@ -0,0 +1,17 @@
+package io.simplequerybuilder;
+
+/**
+ * Both strategies report the total of the unpaged query, without limit, offset or keyset seek predicate.
+ */
+public enum TotalCountStrategy {
+    /**
+     * Adds {@code count(*) over()} to the select list. A keyset page that seeks past a row counts the
+     * unpaged query in a scalar subquery instead, the window would only see the rows after the seek.
+     */
+    WINDOW,
+    /**
+     * Counts the unpaged query once in a {@code with} clause and selects the result next to every row.
+     * Use it where window functions misbehave together with {@code group by}.
+     */
+    CTE
+}
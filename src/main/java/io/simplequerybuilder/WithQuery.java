@@ -0,0 +1,12 @@
+package io.simplequerybuilder;
+
+import java.util.List;
+import java.util.Map;
+
+// The scopes are the parameters of the builders between the one with the with clause and the query, a hoisted
+// subquery sees the parameters of the builders it was used in.
+record WithQuery(String name, BaseQueryBuilder<?> query, boolean materialized, List<Map<String, Object>> scopes) {
+    WithQuery(String name, BaseQueryBuilder<?> query, boolean materialized) {
+        this(name, query, materialized, List.of());
+    }
+}
@@ -0,0 +1,72 @@
+package io.simplequerybuilder.jdbc;
+
+import io.simplequerybuilder.BaseQueryBuilder;
+import io.simplequerybuilder.BoundSql;
+import io.simplequerybuilder.ParameterStyle;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Queries are rendered on the calling thread, so builders never cross threads. Every query borrows its own
+// connection, which lets the page and count queries of one builder run at the same time.
+public class AsyncQueryExecutor implements AutoCloseable {
+    static final int DEFAULT_POOL_SIZE = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+    private final QueryExecutor queryExecutor;
+    private final Executor executor;
+    private final ExecutorService ownedExecutor;
+
+    public AsyncQueryExecutor(QueryExecutor queryExecutor) {
+        this.queryExecutor = queryExecutor;
+        this.ownedExecutor = defaultExecutor(DEFAULT_POOL_SIZE);
+        this.executor = ownedExecutor;
+    }
+
+    public AsyncQueryExecutor(QueryExecutor queryExecutor, Executor executor) {
+        this.queryExecutor = queryExecutor;
+        this.executor = executor;
+        this.ownedExecutor = null;
+    }
+
+    public <T> CompletableFuture<List<T>> list(BaseQueryBuilder<?> query, RowMapper<T> mapper) {
+        var boundSql = query.buildBoundSql(ParameterStyle.POSITIONAL);
+        var shapeFingerprint = queryExecutor.shapeOf(query);
+        return CompletableFuture.supplyAsync(() -> queryExecutor.list(boundSql, shapeFingerprint, mapper), executor);
+    }
+
+    public CompletableFuture<Long> count(BaseQueryBuilder<?> query) {
+        var countSql = query.buildBoundCountSql(ParameterStyle.POSITIONAL);
+        var shapeFingerprint = queryExecutor.shapeOf(query);
+        return CompletableFuture.supplyAsync(() -> queryExecutor.count(countSql, shapeFingerprint), executor);
+    }
+
+    public <T> CompletableFuture<Page<T>> page(BaseQueryBuilder<?> query, RowMapper<T> mapper) {
+        var total = count(query);
+        return list(query, mapper).thenCombine(total, Page::new);
+    }
+
+    @Override
+    public void close() {
+        if (ownedExecutor != null)
+            ownedExecutor.shutdown();
+    }
+
+    // Virtual threads are looked up reflectively so the library keeps running on Java 17.
+    static ExecutorService defaultExecutor(int poolSize) {
+        try {
+            var factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            var threads = new AtomicInteger();
+            return Executors.newFixedThreadPool(poolSize, task -> {
+                var thread = new Thread(task, "query-executor-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
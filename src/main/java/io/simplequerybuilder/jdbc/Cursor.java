@@ -0,0 +1,120 @@
+package io.simplequerybuilder.jdbc;
+
+import io.simplequerybuilder.ExecutionEvent;
+import io.simplequerybuilder.QueryListener;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+final class Cursor<T> extends Spliterators.AbstractSpliterator<T> implements AutoCloseable {
+    private final String sql;
+    private final Connection connection;
+    private final PreparedStatement statement;
+    private final ResultSet resultSet;
+    private final RowMapper<T> mapper;
+    private final boolean restoreAutoCommit;
+    private final StatementCache statementCache;
+    private boolean closed;
+    private QueryListener listener;
+    private long shapeFingerprint;
+    private long executeNanos;
+    private long fetchNanos;
+    private long rows;
+    private RuntimeException failure;
+
+    Cursor(String sql, Connection connection, PreparedStatement statement, ResultSet resultSet, RowMapper<T> mapper,
+           boolean restoreAutoCommit, StatementCache statementCache) {
+        super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+        this.sql = sql;
+        this.connection = connection;
+        this.statement = statement;
+        this.resultSet = resultSet;
+        this.mapper = mapper;
+        this.restoreAutoCommit = restoreAutoCommit;
+        this.statementCache = statementCache;
+    }
+
+    void listen(QueryListener listener, long shapeFingerprint, long executeNanos) {
+        this.listener = listener;
+        this.shapeFingerprint = shapeFingerprint;
+        this.executeNanos = executeNanos;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        if (closed)
+            return false;
+        try {
+            long started = listener == null ? 0 : System.nanoTime();
+            if (!resultSet.next()) {
+                fetchNanos += listener == null ? 0 : System.nanoTime() - started;
+                close();
+                return false;
+            }
+            var row = mapper.mapRow(resultSet);
+            if (listener != null) {
+                fetchNanos += System.nanoTime() - started;
+                rows++;
+            }
+            action.accept(row);
+            return true;
+        } catch (SQLException e) {
+            failure = new QueryExecutionException(sql, e);
+            close();
+            throw failure;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed)
+            return;
+        closed = true;
+        var releaseFailure = release(sql, connection, statement, resultSet, restoreAutoCommit, statementCache);
+        if (listener != null)
+            listener.onExecution(new ExecutionEvent(sql, shapeFingerprint, rows, executeNanos, fetchNanos,
+                    failure != null ? failure : releaseFailure));
+        if (releaseFailure != null)
+            throw releaseFailure;
+    }
+
+    static QueryExecutionException release(String sql, Connection connection, PreparedStatement statement,
+                                           ResultSet resultSet, boolean restoreAutoCommit, StatementCache statementCache) {
+        SQLException failure = null;
+        try {
+            if (resultSet != null)
+                resultSet.close();
+        } catch (SQLException e) {
+            failure = e;
+        }
+        try {
+            if (statement != null) {
+                if (statementCache != null)
+                    statementCache.release(statement);
+                else
+                    statement.close();
+            }
+        } catch (SQLException e) {
+            failure = failure == null ? e : failure;
+        }
+        try {
+            if (restoreAutoCommit) {
+                connection.commit();
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            failure = failure == null ? e : failure;
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            failure = failure == null ? e : failure;
+        }
+        return failure == null ? null : new QueryExecutionException(sql, failure);
+    }
+}
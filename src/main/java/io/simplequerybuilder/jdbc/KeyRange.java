@@ -0,0 +1,64 @@
+package io.simplequerybuilder.jdbc;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.Temporal;
+import java.util.ArrayList;
+import java.util.List;
+
+// A null bound is open. The first and the last range of a split are open ended, so rows outside the estimated
+// key range are still read; rows with a null key are not.
+public record KeyRange(Object lowerInclusive, Object upperExclusive) {
+
+    public static List<KeyRange> split(long min, long max, int partitions) {
+        checkPartitions(partitions);
+        long width = Math.subtractExact(max, min);
+        long step = width / partitions;
+        long remainder = width % partitions;
+        var bounds = new ArrayList<Object>(partitions + 1);
+        for (int i = 0; i <= partitions; i++)
+            bounds.add(min + step * i + Math.min(i, remainder));
+        return ranges(bounds);
+    }
+
+    // Time based values are split by duration. Date based ones (LocalDate, YearMonth) have no duration, so they
+    // are split into whole days, months or years, like the long split.
+    @SuppressWarnings("unchecked")
+    public static <T extends Temporal & Comparable<? super T>> List<KeyRange> split(T from, T to, int partitions) {
+        checkPartitions(partitions);
+        var bounds = new ArrayList<Object>(partitions + 1);
+        if (from.isSupported(ChronoUnit.SECONDS)) {
+            var step = Duration.between(from, to).dividedBy(partitions);
+            for (int i = 0; i <= partitions; i++)
+                bounds.add(i == partitions ? to : (T) from.plus(step.multipliedBy(i)));
+            return ranges(bounds);
+        }
+        var unit = dateUnit(from);
+        long width = unit.between(from, to);
+        long step = width / partitions;
+        long remainder = width % partitions;
+        for (int i = 0; i <= partitions; i++)
+            bounds.add(i == partitions ? to : (T) from.plus(step * i + Math.min(i, remainder), unit));
+        return ranges(bounds);
+    }
+
+    private static ChronoUnit dateUnit(Temporal temporal) {
+        for (var unit : new ChronoUnit[]{ChronoUnit.DAYS, ChronoUnit.MONTHS, ChronoUnit.YEARS}) {
+            if (temporal.isSupported(unit))
+                return unit;
+        }
+        throw new IllegalArgumentException("Can't split a range of " + temporal.getClass().getSimpleName());
+    }
+
+    private static List<KeyRange> ranges(List<Object> bounds) {
+        var ranges = new ArrayList<KeyRange>(bounds.size() - 1);
+        for (int i = 0; i < bounds.size() - 1; i++)
+            ranges.add(new KeyRange(i == 0 ? null : bounds.get(i), i == bounds.size() - 2 ? null : bounds.get(i + 1)));
+        return ranges;
+    }
+
+    private static void checkPartitions(int partitions) {
+        if (partitions < 1)
+            throw new IllegalArgumentException("partitions must be positive");
+    }
+}
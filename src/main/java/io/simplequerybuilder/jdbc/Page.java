@@ -0,0 +1,6 @@
+package io.simplequerybuilder.jdbc;
+
+import java.util.List;
+
+public record Page<T>(List<T> rows, long total) {
+}
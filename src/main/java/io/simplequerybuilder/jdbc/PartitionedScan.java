@@ -0,0 +1,182 @@
+package io.simplequerybuilder.jdbc;
+
+import io.simplequerybuilder.BaseQueryBuilder;
+import io.simplequerybuilder.BoundSql;
+import io.simplequerybuilder.ParameterStyle;
+import io.simplequerybuilder.QueryListener;
+import io.simplequerybuilder.Spec;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// Every partition is read by its own worker on its own connection. Rows are handed to the sink on the calling
+// thread through bounded buffers, so the sink doesn't have to be thread safe and memory stays bounded. In
+// ordered mode all rows of a partition reach the sink before the rows of the next one.
+public class PartitionedScan implements AutoCloseable {
+    public static final int DEFAULT_BUFFER_SIZE = 1000;
+    private static final Object END = new Object();
+
+    private final QueryExecutor queryExecutor;
+    private final Executor executor;
+    private final ExecutorService ownedExecutor;
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+
+    public PartitionedScan(QueryExecutor queryExecutor) {
+        this.queryExecutor = queryExecutor;
+        this.ownedExecutor = AsyncQueryExecutor.defaultExecutor(AsyncQueryExecutor.DEFAULT_POOL_SIZE);
+        this.executor = ownedExecutor;
+    }
+
+    public PartitionedScan(QueryExecutor queryExecutor, Executor executor) {
+        this.queryExecutor = queryExecutor;
+        this.executor = executor;
+        this.ownedExecutor = null;
+    }
+
+    public PartitionedScan bufferSize(int bufferSize) {
+        if (bufferSize < 1)
+            throw new IllegalArgumentException("bufferSize must be positive");
+        this.bufferSize = bufferSize;
+        return this;
+    }
+
+    public <Q extends BaseQueryBuilder<Q>, T> long forEach(Supplier<Q> query, String keyColumn, List<KeyRange> ranges,
+                                                          RowMapper<T> mapper, Consumer<? super T> sink) {
+        return scan(partitions(query, keyColumn, ranges), shapeOf(query), mapper, sink, false);
+    }
+
+    public <Q extends BaseQueryBuilder<Q>, T> long forEachOrdered(Supplier<Q> query, String keyColumn, List<KeyRange> ranges,
+                                                                 RowMapper<T> mapper, Consumer<? super T> sink) {
+        return scan(partitions(query, keyColumn, ranges), shapeOf(query), mapper, sink, true);
+    }
+
+    @Override
+    public void close() {
+        if (ownedExecutor != null)
+            ownedExecutor.shutdown();
+    }
+
+    static <Q extends BaseQueryBuilder<Q>> List<BoundSql> partitions(Supplier<Q> query, String keyColumn, List<KeyRange> ranges) {
+        var partitions = new ArrayList<BoundSql>(ranges.size());
+        for (var range : ranges) {
+            var partition = query.get().groupFilters();
+            var rangeFilter = new Spec();
+            if (range.lowerInclusive() != null)
+                rangeFilter.and(keyColumn + " >= :partitionLower", range.lowerInclusive());
+            if (range.upperExclusive() != null)
+                rangeFilter.and(keyColumn + " < :partitionUpper", range.upperExclusive());
+            partitions.add(partition.and(rangeFilter).buildBoundSql(ParameterStyle.POSITIONAL));
+        }
+        return partitions;
+    }
+
+    private long shapeOf(Supplier<? extends BaseQueryBuilder<?>> query) {
+        return queryExecutor.listener() == QueryListener.NOOP ? 0 : query.get().shapeFingerprint();
+    }
+
+    private <T> long scan(List<BoundSql> partitions, long shapeFingerprint, RowMapper<T> mapper,
+                          Consumer<? super T> sink, boolean ordered) {
+        var scan = new Scan(partitions.size(), ordered ? bufferSize : bufferSize * partitions.size(), ordered);
+        var workers = new ArrayList<CompletableFuture<Void>>(partitions.size());
+        for (int i = 0; i < partitions.size(); i++) {
+            var partition = partitions.get(i);
+            var buffer = scan.buffer(i);
+            workers.add(CompletableFuture.runAsync(() -> {
+                try {
+                    queryExecutor.forEach(partition, shapeFingerprint, mapper, row -> scan.put(buffer, row));
+                    scan.put(buffer, END);
+                } catch (RuntimeException e) {
+                    scan.fail(e);
+                }
+            }, executor));
+        }
+
+        long rows = 0;
+        try {
+            int finished = 0;
+            int current = 0;
+            while (finished < partitions.size()) {
+                var item = scan.take(scan.buffer(ordered ? current : 0));
+                if (item == END) {
+                    finished++;
+                    current++;
+                } else {
+                    @SuppressWarnings("unchecked")
+                    var row = (T) item;
+                    sink.accept(row);
+                    rows++;
+                }
+            }
+        } catch (RuntimeException e) {
+            scan.fail(e);
+        } finally {
+            scan.cancelled = true;
+            for (var worker : workers)
+                worker.exceptionally(e -> null).join();
+        }
+        if (scan.failure != null)
+            throw scan.failure;
+        return rows;
+    }
+
+    private static final class Scan {
+        private final List<BlockingQueue<Object>> buffers;
+        private volatile boolean cancelled;
+        private volatile RuntimeException failure;
+
+        Scan(int partitions, int bufferSize, boolean ordered) {
+            buffers = new ArrayList<>(ordered ? partitions : 1);
+            for (int i = 0; i < (ordered ? partitions : 1); i++)
+                buffers.add(new ArrayBlockingQueue<>(bufferSize));
+        }
+
+        BlockingQueue<Object> buffer(int partition) {
+            return buffers.get(Math.min(partition, buffers.size() - 1));
+        }
+
+        void put(BlockingQueue<Object> buffer, Object item) {
+            try {
+                while (!buffer.offer(item, 10, TimeUnit.MILLISECONDS)) {
+                    if (cancelled)
+                        throw new CancellationException();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException();
+            }
+        }
+
+        Object take(BlockingQueue<Object> buffer) {
+            try {
+                Object item;
+                while ((item = buffer.poll(10, TimeUnit.MILLISECONDS)) == null) {
+                    if (failure != null)
+                        throw failure;
+                }
+                return item;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException();
+            }
+        }
+
+        synchronized void fail(RuntimeException e) {
+            if (e instanceof CancellationException && cancelled)
+                return;
+            if (failure == null)
+                failure = e;
+            else if (failure != e)
+                failure.addSuppressed(e);
+            cancelled = true;
+        }
+    }
+}
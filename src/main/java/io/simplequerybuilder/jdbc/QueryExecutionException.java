@@ -0,0 +1,10 @@
+package io.simplequerybuilder.jdbc;
+
+import java.sql.SQLException;
+
+public class QueryExecutionException extends RuntimeException {
+
+    public QueryExecutionException(String sql, SQLException cause) {
+        super("Failed to execute [" + sql + "]: " + cause.getMessage(), cause);
+    }
+}
@@ -0,0 +1,194 @@
+package io.simplequerybuilder.jdbc;
+
+import io.simplequerybuilder.BaseQueryBuilder;
+import io.simplequerybuilder.BoundSql;
+import io.simplequerybuilder.ExecutionEvent;
+import io.simplequerybuilder.InsertBuilder;
+import io.simplequerybuilder.ParameterStyle;
+import io.simplequerybuilder.QueryListener;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// Some drivers (PostgreSQL among them) only fetch rows in batches inside a transaction. After fetchSize(n) is set,
+// stream and forEach switch auto-commit off while their cursor is open. list and count read every row at once
+// and leave the connection as it is. Streams hold their connection until they are closed.
+public class QueryExecutor {
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+
+    private final DataSource dataSource;
+    private int fetchSize = DEFAULT_FETCH_SIZE;
+    private boolean streamInTransaction;
+    private StatementCache statementCache;
+    private QueryListener listener;
+
+    public QueryExecutor(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    public QueryExecutor fetchSize(int fetchSize) {
+        if (fetchSize < 0)
+            throw new IllegalArgumentException("fetchSize can't be negative");
+        this.fetchSize = fetchSize;
+        this.streamInTransaction = fetchSize > 0;
+        return this;
+    }
+
+    public QueryExecutor statementCache(StatementCache statementCache) {
+        this.statementCache = statementCache;
+        return this;
+    }
+
+    public QueryExecutor listener(QueryListener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    public <T> Stream<T> stream(BaseQueryBuilder<?> query, RowMapper<T> mapper) {
+        return stream(query.buildBoundSql(ParameterStyle.POSITIONAL), shapeOf(query), mapper);
+    }
+
+    public <T> Stream<T> stream(BoundSql query, RowMapper<T> mapper) {
+        return stream(query, 0, mapper);
+    }
+
+    <T> Stream<T> stream(BoundSql query, long shapeFingerprint, RowMapper<T> mapper) {
+        var cursor = open(query, shapeFingerprint, mapper, true);
+        return StreamSupport.stream(cursor, false).onClose(cursor::close);
+    }
+
+    public <T> void forEach(BaseQueryBuilder<?> query, RowMapper<T> mapper, Consumer<? super T> action) {
+        forEach(query.buildBoundSql(ParameterStyle.POSITIONAL), shapeOf(query), mapper, action);
+    }
+
+    public <T> void forEach(BoundSql query, RowMapper<T> mapper, Consumer<? super T> action) {
+        forEach(query, 0, mapper, action);
+    }
+
+    <T> void forEach(BoundSql query, long shapeFingerprint, RowMapper<T> mapper, Consumer<? super T> action) {
+        forEach(query, shapeFingerprint, mapper, action, true);
+    }
+
+    private <T> void forEach(BoundSql query, long shapeFingerprint, RowMapper<T> mapper, Consumer<? super T> action,
+                             boolean streaming) {
+        try (var cursor = open(query, shapeFingerprint, mapper, streaming)) {
+            while (cursor.tryAdvance(action)) {
+                // the action consumes every row
+            }
+        }
+    }
+
+    public <T> List<T> list(BaseQueryBuilder<?> query, RowMapper<T> mapper) {
+        return list(query.buildBoundSql(ParameterStyle.POSITIONAL), shapeOf(query), mapper);
+    }
+
+    public <T> List<T> list(BoundSql query, RowMapper<T> mapper) {
+        return list(query, 0, mapper);
+    }
+
+    <T> List<T> list(BoundSql query, long shapeFingerprint, RowMapper<T> mapper) {
+        var rows = new ArrayList<T>();
+        forEach(query, shapeFingerprint, mapper, rows::add, false);
+        return rows;
+    }
+
+    public long count(BaseQueryBuilder<?> query) {
+        return count(query.buildBoundCountSql(ParameterStyle.POSITIONAL), shapeOf(query));
+    }
+
+    long count(BoundSql countQuery, long shapeFingerprint) {
+        var counts = list(countQuery, shapeFingerprint, resultSet -> resultSet.getLong(1));
+        return counts.isEmpty() ? 0 : counts.get(0);
+    }
+
+    // All statements of the insert run on one connection. With auto-commit on, every statement commits on its own.
+    public long execute(InsertBuilder insert) {
+        var listener = listener();
+        var inserted = new long[1];
+        try (var connection = dataSource.getConnection()) {
+            insert.forEachStatement(ParameterStyle.POSITIONAL, statement -> {
+                long started = listener == QueryListener.NOOP ? 0 : System.nanoTime();
+                RuntimeException failure = null;
+                long rows = 0;
+                try (var prepared = connection.prepareStatement(statement.sql())) {
+                    bind(prepared, statement.parameters());
+                    rows = prepared.executeUpdate();
+                    inserted[0] += rows;
+                } catch (SQLException e) {
+                    failure = new QueryExecutionException(statement.sql(), e);
+                    throw failure;
+                } finally {
+                    if (listener != QueryListener.NOOP)
+                        listener.onExecution(new ExecutionEvent(statement.sql(), 0, rows, System.nanoTime() - started, 0, failure));
+                }
+            });
+        } catch (SQLException e) {
+            throw new QueryExecutionException("insert", e);
+        }
+        return inserted[0];
+    }
+
+    QueryListener listener() {
+        return listener != null ? listener : QueryListener.global();
+    }
+
+    // Only computed when someone listens, the fingerprint tags the execution events of the query.
+    long shapeOf(BaseQueryBuilder<?> query) {
+        return listener() == QueryListener.NOOP ? 0 : query.shapeFingerprint();
+    }
+
+    <T> Cursor<T> open(BoundSql query, long shapeFingerprint, RowMapper<T> mapper) {
+        return open(query, shapeFingerprint, mapper, true);
+    }
+
+    private <T> Cursor<T> open(BoundSql query, long shapeFingerprint, RowMapper<T> mapper, boolean streaming) {
+        var listener = listener();
+        long started = listener == QueryListener.NOOP ? 0 : System.nanoTime();
+        Connection connection = null;
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+        var restoreAutoCommit = false;
+        try {
+            connection = dataSource.getConnection();
+            if (streaming && streamInTransaction && connection.getAutoCommit()) {
+                connection.setAutoCommit(false);
+                restoreAutoCommit = true;
+            }
+            statement = statementCache != null
+                    ? statementCache.prepare(connection, query.sql())
+                    : connection.prepareStatement(query.sql(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            bind(statement, query.parameters());
+            resultSet = statement.executeQuery();
+            var cursor = new Cursor<>(query.sql(), connection, statement, resultSet, mapper, restoreAutoCommit,
+                    statementCache);
+            if (listener != QueryListener.NOOP)
+                cursor.listen(listener, shapeFingerprint, System.nanoTime() - started);
+            return cursor;
+        } catch (SQLException e) {
+            var failure = new QueryExecutionException(query.sql(), e);
+            if (connection != null) {
+                var releaseFailure = Cursor.release(query.sql(), connection, statement, resultSet, restoreAutoCommit,
+                        statementCache);
+                if (releaseFailure != null)
+                    failure.addSuppressed(releaseFailure);
+            }
+            if (listener != QueryListener.NOOP)
+                listener.onExecution(new ExecutionEvent(query.sql(), shapeFingerprint, 0, System.nanoTime() - started, 0, failure));
+            throw failure;
+        }
+    }
+
+    static void bind(PreparedStatement statement, Object[] parameters) throws SQLException {
+        for (int i = 0; i < parameters.length; i++)
+            statement.setObject(i + 1, parameters[i]);
+    }
+}
@@ -0,0 +1,233 @@
+package io.simplequerybuilder.jdbc;
+
+import io.simplequerybuilder.BaseQueryBuilder;
+import io.simplequerybuilder.BoundSql;
+import io.simplequerybuilder.ParameterStyle;
+import io.simplequerybuilder.SortColumn;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// Runs one query on every shard at the same time and merges the sorted shard results while they are read, so
+// memory stays bounded by the fetch size of each shard. Without a comparator the order by columns are read
+// from the result set by their column names and compared with Comparable, which only matches the database
+// order for values the database sorts the same way Java does. A null key needs an explicit nulls first or nulls last
+// in its order by, since databases disagree on where nulls go by default.
+public class ShardedQueryExecutor implements AutoCloseable {
+    private final List<QueryExecutor> shards;
+    private final Executor executor;
+    private final ExecutorService ownedExecutor;
+
+    public ShardedQueryExecutor(List<QueryExecutor> shards) {
+        this.shards = List.copyOf(shards);
+        this.ownedExecutor = AsyncQueryExecutor.defaultExecutor(Math.max(1, this.shards.size()));
+        this.executor = ownedExecutor;
+    }
+
+    public ShardedQueryExecutor(List<QueryExecutor> shards, Executor executor) {
+        this.shards = List.copyOf(shards);
+        this.executor = executor;
+        this.ownedExecutor = null;
+    }
+
+    public <T> Stream<T> stream(BaseQueryBuilder<?> query, RowMapper<T> mapper) {
+        var sortColumns = query.sortColumns();
+        var labels = new String[sortColumns.size()];
+        for (int i = 0; i < labels.length; i++)
+            labels[i] = columnLabel(sortColumns.get(i));
+
+        RowMapper<ShardRow<T>> rowMapper = resultSet -> {
+            var keys = new Object[labels.length];
+            for (int i = 0; i < labels.length; i++)
+                keys[i] = resultSet.getObject(labels[i]);
+            return new ShardRow<>(keys, mapper.mapRow(resultSet));
+        };
+        return merge(query, rowMapper, keyComparator(sortColumns)).map(ShardRow::value);
+    }
+
+    public <T> Stream<T> stream(BaseQueryBuilder<?> query, RowMapper<T> mapper, Comparator<? super T> order) {
+        RowMapper<ShardRow<T>> rowMapper = resultSet -> new ShardRow<>(null, mapper.mapRow(resultSet));
+        return merge(query, rowMapper, Comparator.comparing(ShardRow::value, order)).map(ShardRow::value);
+    }
+
+    public <T> List<T> list(BaseQueryBuilder<?> query, RowMapper<T> mapper) {
+        try (var rows = stream(query, mapper)) {
+            return rows.toList();
+        }
+    }
+
+    public <T> List<T> list(BaseQueryBuilder<?> query, RowMapper<T> mapper, Comparator<? super T> order) {
+        try (var rows = stream(query, mapper, order)) {
+            return rows.toList();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (ownedExecutor != null)
+            ownedExecutor.shutdown();
+    }
+
+    private <T> Stream<T> merge(BaseQueryBuilder<?> query, RowMapper<T> mapper, Comparator<? super T> order) {
+        var shardSql = query.buildBoundShardSql(ParameterStyle.POSITIONAL);
+        var cursors = open(query, shardSql, mapper);
+        var merged = new MergedCursor<>(cursors, order, query.offset(), query.limit());
+        return StreamSupport.stream(merged, false).onClose(merged::close);
+    }
+
+    private <T> List<Cursor<T>> open(BaseQueryBuilder<?> query, BoundSql shardSql, RowMapper<T> mapper) {
+        var opening = new ArrayList<CompletableFuture<Cursor<T>>>(shards.size());
+        for (var shard : shards) {
+            var shapeFingerprint = shard.shapeOf(query);
+            opening.add(CompletableFuture.supplyAsync(() -> shard.open(shardSql, shapeFingerprint, mapper), executor));
+        }
+
+        var cursors = new ArrayList<Cursor<T>>(shards.size());
+        RuntimeException failure = null;
+        for (var cursor : opening) {
+            try {
+                cursors.add(cursor.join());
+            } catch (CompletionException e) {
+                var cause = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+                if (failure == null)
+                    failure = cause;
+                else
+                    failure.addSuppressed(cause);
+            }
+        }
+        if (failure != null) {
+            closeAll(cursors, failure);
+            throw failure;
+        }
+        return cursors;
+    }
+
+    private static <T> void closeAll(List<Cursor<T>> cursors, RuntimeException failure) {
+        for (var cursor : cursors) {
+            try {
+                cursor.close();
+            } catch (RuntimeException e) {
+                if (failure == null)
+                    failure = e;
+                else
+                    failure.addSuppressed(e);
+            }
+        }
+        if (failure != null)
+            throw failure;
+    }
+
+    static String columnLabel(SortColumn column) {
+        var expression = column.expression();
+        var label = expression.substring(expression.lastIndexOf('.') + 1);
+        if (label.length() > 1 && label.charAt(0) == '"' && label.charAt(label.length() - 1) == '"')
+            label = label.substring(1, label.length() - 1);
+        for (int i = 0; i < label.length(); i++) {
+            if (!Character.isLetterOrDigit(label.charAt(i)) && label.charAt(i) != '_')
+                throw new IllegalStateException("Can't read order by expression [" + expression
+                        + "] from the result set, pass a comparator to merge the shards");
+        }
+        return label;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static Comparator<ShardRow<?>> keyComparator(List<SortColumn> sortColumns) {
+        return (left, right) -> {
+            for (int i = 0; i < sortColumns.size(); i++) {
+                var column = sortColumns.get(i);
+                var leftKey = (Comparable) left.keys()[i];
+                var rightKey = right.keys()[i];
+                int compared;
+                if (leftKey == null || rightKey == null) {
+                    if (column.nullsFirst() == null)
+                        throw new IllegalStateException("Order by [" + column.expression() + "] returned null, add "
+                                + "nulls first or nulls last to merge the shards");
+                    compared = leftKey == rightKey ? 0 : (leftKey == null) == column.nullsFirst() ? -1 : 1;
+                } else
+                    compared = column.descending() ? -leftKey.compareTo(rightKey) : leftKey.compareTo(rightKey);
+                if (compared != 0)
+                    return compared;
+            }
+            return 0;
+        };
+    }
+
+    record ShardRow<T>(Object[] keys, T value) {
+    }
+
+    private static final class MergedCursor<T> extends Spliterators.AbstractSpliterator<T> implements AutoCloseable {
+        private final List<Cursor<T>> cursors;
+        private final PriorityQueue<Head<T>> heads;
+        private long skip;
+        private long remaining;
+
+        MergedCursor(List<Cursor<T>> cursors, Comparator<? super T> order, long offset, int limit) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED);
+            this.cursors = cursors;
+            this.heads = new PriorityQueue<>(Math.max(1, cursors.size()), Comparator
+                    .<Head<T>, T>comparing(head -> head.row, order)
+                    .thenComparingInt(head -> head.shard));
+            this.skip = offset;
+            this.remaining = limit > 0 ? limit : Long.MAX_VALUE;
+            try {
+                for (int shard = 0; shard < cursors.size(); shard++)
+                    advance(new Head<>(cursors.get(shard), shard));
+            } catch (RuntimeException e) {
+                closeAll(cursors, e);
+            }
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            while (remaining > 0) {
+                var head = heads.poll();
+                if (head == null)
+                    break;
+                var row = head.row;
+                advance(head);
+                if (skip > 0) {
+                    skip--;
+                    continue;
+                }
+                remaining--;
+                action.accept(row);
+                return true;
+            }
+            close();
+            return false;
+        }
+
+        private void advance(Head<T> head) {
+            if (head.cursor.tryAdvance(row -> head.row = row))
+                heads.add(head);
+        }
+
+        @Override
+        public void close() {
+            heads.clear();
+            closeAll(cursors, null);
+        }
+    }
+
+    private static final class Head<T> {
+        final Cursor<T> cursor;
+        final int shard;
+        T row;
+
+        Head(Cursor<T> cursor, int shard) {
+            this.cursor = cursor;
+            this.shard = shard;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package io.simplequerybuilder.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Statements are prepared on the physical connection, so they survive the connection being returned to a pool
+// and borrowed again. This bypasses the statement cache of the pool, so only use it when the pool has none.
+// A cached statement is checked out while a cursor reads from it. A second cursor for the same sql on the same
+// connection (a single connection data source, or a lookup inside a stream) gets a fresh statement that is closed
+// together with its cursor. The statements of a connection the pool has closed are closed and dropped on the next
+// prepare. The connection can't be held weakly instead, every statement holds on to its connection.
+public final class StatementCache {
+    private final int maxSize;
+    private final Map<Connection, Map<String, PreparedStatement>> connections = new IdentityHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    // Checked out statements, mapped to false once the cache dropped them and the cursor has to close them.
+    private final Map<PreparedStatement, Boolean> checkedOut = new IdentityHashMap<>();
+
+    public StatementCache(int maxSize) {
+        if (maxSize < 1)
+            throw new IllegalArgumentException("maxSize must be positive");
+        this.maxSize = maxSize;
+    }
+
+    public long hits() {
+        return hits.get();
+    }
+
+    public long misses() {
+        return misses.get();
+    }
+
+    public long evictions() {
+        return evictions.get();
+    }
+
+    public synchronized int size() {
+        int size = 0;
+        for (var statements : connections.values())
+            size += statements.size();
+        return size;
+    }
+
+    public synchronized void clear() {
+        for (var statements : connections.values()) {
+            for (var statement : statements.values())
+                drop(statement);
+        }
+        connections.clear();
+    }
+
+    // Every prepared statement has to be handed back through release(), cached or not.
+    PreparedStatement prepare(Connection connection, String sql) throws SQLException {
+        var physical = connection.isWrapperFor(Connection.class) ? connection.unwrap(Connection.class) : connection;
+        synchronized (this) {
+            purgeClosedConnections(physical);
+            var statements = statements(physical);
+            var statement = statements.get(sql);
+            if (statement != null && !statement.isClosed()) {
+                if (checkedOut.putIfAbsent(statement, true) == null) {
+                    hits.incrementAndGet();
+                    return statement;
+                }
+            } else {
+                misses.incrementAndGet();
+                statement = physical.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                statements.put(sql, statement);
+                checkedOut.put(statement, true);
+                return statement;
+            }
+        }
+        misses.incrementAndGet();
+        return physical.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+    }
+
+    // Cached statements are kept for the next cursor, all others are closed.
+    void release(PreparedStatement statement) throws SQLException {
+        synchronized (this) {
+            if (Boolean.TRUE.equals(checkedOut.remove(statement))) {
+                statement.clearParameters();
+                return;
+            }
+        }
+        statement.close();
+    }
+
+    private void drop(PreparedStatement statement) {
+        if (checkedOut.replace(statement, false) == null)
+            closeQuietly(statement);
+    }
+
+    private Map<String, PreparedStatement> statements(Connection physical) {
+        var statements = connections.get(physical);
+        if (statements == null) {
+            statements = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                    if (size() <= maxSize)
+                        return false;
+                    evictions.incrementAndGet();
+                    drop(eldest.getValue());
+                    return true;
+                }
+            };
+            connections.put(physical, statements);
+        }
+        return statements;
+    }
+
+    // A pool that shrinks closes connections without borrowing new ones, so this runs on every prepare.
+    private void purgeClosedConnections(Connection borrowed) throws SQLException {
+        var iterator = connections.entrySet().iterator();
+        while (iterator.hasNext()) {
+            var entry = iterator.next();
+            if (entry.getKey() != borrowed && entry.getKey().isClosed()) {
+                for (var statement : entry.getValue().values())
+                    drop(statement);
+                iterator.remove();
+            }
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException ignored) {
+            // the statement is dropped from the cache either way
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package io.simplequerybuilder;
+
+import org.junit.jupiter.api.Test;
+
+import static io.simplequerybuilder.utils.TestUtils.inlined;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CountQueryOptimizerTest {
+
+    @Test
+    void should_drop_unreferenced_to_one_joins() {
+        var query = new PlainSqlBuilder()
+                .select("o.*", "c.name", "a.city")
+                .from("orders o")
+                .innerJoin("tenants t on t.id = o.tenant_id")
+                .leftJoinToOne("customers c on c.id = o.customer_id")
+                .leftJoinToOne("addresses a on a.id = o.address_id")
+                .where("t.id = :tenantId")
+                .and("a.city = :city");
+
+        var expected = """
+                select count(1)
+                from orders o
+                    inner join tenants t on t.id = o.tenant_id
+                    left join addresses a on a.id = o.address_id
+                where t.id = :tenantId
+                    and a.city = :city""";
+        assertThat(query.buildCountSql()).isEqualTo(inlined(expected).replace("count(1)", "count(1) "));
+        assertThat(query.buildSql()).contains("left join customers c on c.id = o.customer_id");
+    }
+
+    @Test
+    void should_keep_inner_to_one_joins() {
+        var query = new PlainSqlBuilder()
+                .select("o.*", "c.name")
+                .from("orders o")
+                .innerJoinToOne("customers c on c.id = o.customer_id");
+
+        assertThat(query.buildCountSql())
+                .isEqualTo("select count(1)  from orders o inner join customers c on c.id = o.customer_id");
+    }
+
+    @Test
+    void should_keep_to_one_joins_referenced_by_kept_joins() {
+        var query = new PlainSqlBuilder()
+                .select("o.*")
+                .from("orders o")
+                .leftJoinToOne("customers c on c.id = o.customer_id")
+                .leftJoinToOne("segments s on s.id = c.segment_id")
+                .leftJoinToOne("regions r on r.id = o.region_id")
+                .where("s.name = :segment");
+
+        var expected = """
+                select count(1)
+                from orders o
+                    left join customers c on c.id = o.customer_id
+                    left join segments s on s.id = c.segment_id
+                where s.name = :segment""";
+        assertThat(query.buildCountSql()).isEqualTo(inlined(expected).replace("count(1)", "count(1) "));
+    }
+
+    @Test
+    void should_keep_regular_left_joins() {
+        var query = new PlainSqlBuilder()
+                .select("o.*")
+                .from("orders o")
+                .leftJoin("order_items i on i.order_id = o.id");
+
+        assertThat(query.buildCountSql()).isEqualTo("select count(1)  from orders o left join order_items i on i.order_id = o.id");
+    }
+
+    @Test
+    void should_wrap_grouped_queries() {
+        var query = new PlainSqlBuilder()
+                .select("o.customer_id", "count(1)")
+                .from("orders o")
+                .leftJoinToOne("customers c on c.id = o.customer_id")
+                .where("o.tenant_id = :tenantId")
+                .groupBy("o.customer_id")
+                .having("count(1) > 2")
+                .orderBy("o.customer_id");
+
+        var expected = """
+                select count(1)
+                from (select 1
+                      from orders o
+                      where o.tenant_id = :tenantId
+                      group by o.customer_id
+                      having count(1) > 2) grouped_rows""";
+        assertThat(query.buildCountSql()).isEqualTo(inlined(expected));
+    }
+
+    @Test
+    void should_strip_order_by_of_unpaged_subQueries() {
+        var unpaged = new PlainSqlBuilder()
+                .select("c.id")
+                .from("customers c")
+                .orderBy("c.name");
+        var paged = new PlainSqlBuilder()
+                .select("c.id")
+                .from("customers c")
+                .orderBy("c.revenue desc")
+                .limit(10);
+        var query = new PlainSqlBuilder()
+                .select("o.*")
+                .from("orders o")
+                .andIn("o.customer_id", unpaged)
+                .orIn("o.referrer_id", paged);
+
+        var expected = """
+                select count(1)
+                from orders o
+                where o.customer_id in (select c.id from customers c)
+                    or o.referrer_id in (select c.id from customers c order by c.revenue desc limit 10)""";
+        assertThat(query.buildCountSql()).isEqualTo(inlined(expected).replace("count(1)", "count(1) "));
+        assertThat(query.buildSql()).contains("(select c.id from customers c order by c.name)");
+    }
+
+    @Test
+    void should_stop_counting_at_cap() {
+        var boundSql = new PlainSqlBuilder()
+                .select("o.*")
+                .from("orders o")
+                .leftJoinToOne("customers c on c.id = o.customer_id")
+                .where("o.tenant_id = :tenantId", 1)
+                .orderBy("o.id")
+                .limit(20)
+                .offset(40)
+                .buildBoundCappedCountSql(10_000, ParameterStyle.POSITIONAL);
+
+        var expected = """
+                select count(1)
+                from (select 1
+                      from orders o
+                      where o.tenant_id = ?
+                      limit 10001) capped_rows""";
+        assertThat(boundSql.sql()).isEqualTo(inlined(expected));
+        assertThat(boundSql.parameters()).containsExactly(1);
+    }
+
+    @Test
+    void should_reject_non_positive_cap() {
+        var query = new PlainSqlBuilder().select("o.*").from("orders o");
+
+        assertThatThrownBy(() -> query.buildCappedCountSql(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,110 @@
+package io.simplequerybuilder;
+
+import org.junit.jupiter.api.Test;
+
+import static io.simplequerybuilder.utils.TestUtils.inlined;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DeferredJoinTest {
+
+    @Test
+    void should_page_over_keys_and_join_back() {
+        var boundSql = new PlainSqlBuilder()
+                .select("o.*", "c.name", "s.code")
+                .from("orders o")
+                .leftJoinToOne("customers c on c.id = o.customer_id")
+                .leftJoinToOne("shipments s on s.id = o.shipment_id")
+                .where("o.tenant_id = :tenantId", 1)
+                .and("c.active is true")
+                .orderBy("o.created_date desc")
+                .limit(20)
+                .offset(10_000)
+                .deferredJoin("o.id")
+                .buildBoundSql(ParameterStyle.POSITIONAL);
+
+        var expected = """
+                select o.*, c.name, s.code
+                from orders o
+                    inner join (select o.id
+                                from orders o
+                                    left join customers c on c.id = o.customer_id
+                                where o.tenant_id = ? and c.active is true
+                                order by o.created_date desc
+                                limit 20 offset 10000) deferred_page on deferred_page.id = o.id
+                    left join customers c on c.id = o.customer_id
+                    left join shipments s on s.id = o.shipment_id
+                order by o.created_date desc""";
+        assertThat(boundSql.sql()).isEqualTo(inlined(expected));
+        assertThat(boundSql.parameters()).containsExactly(1);
+    }
+
+    @Test
+    void should_keep_inner_to_one_joins_in_the_page_of_keys() {
+        var boundSql = new PlainSqlBuilder()
+                .select("o.*", "c.name", "s.code")
+                .from("orders o")
+                .innerJoinToOne("customers c on c.id = o.customer_id")
+                .leftJoinToOne("shipments s on s.id = o.shipment_id")
+                .where("o.tenant_id = :tenantId", 1)
+                .orderBy("o.id")
+                .limit(20)
+                .offset(40)
+                .deferredJoin("o.id")
+                .buildBoundSql(ParameterStyle.POSITIONAL);
+
+        var expected = """
+                select o.*, c.name, s.code
+                from orders o
+                    inner join (select o.id
+                                from orders o
+                                    inner join customers c on c.id = o.customer_id
+                                where o.tenant_id = ?
+                                order by o.id
+                                limit 20 offset 40) deferred_page on deferred_page.id = o.id
+                    inner join customers c on c.id = o.customer_id
+                    left join shipments s on s.id = o.shipment_id
+                order by o.id""";
+        assertThat(boundSql.sql()).isEqualTo(inlined(expected));
+        assertThat(boundSql.parameters()).containsExactly(1);
+    }
+
+    @Test
+    void should_reject_to_many_joins() {
+        var query = new PlainSqlBuilder()
+                .select("o.*", "i.sku")
+                .from("orders o")
+                .innerJoin("order_items i on i.order_id = o.id")
+                .orderBy("o.id")
+                .limit(6)
+                .offset(3)
+                .deferredJoin("o.id");
+
+        assertThatThrownBy(query::buildSql)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("to-one joins");
+    }
+
+    @Test
+    void should_render_normally_without_paging() {
+        var query = new PlainSqlBuilder()
+                .select("o.*")
+                .from("orders o")
+                .deferredJoin("o.id");
+
+        assertThat(query.buildSql()).isEqualTo("select o.* from orders o");
+        assertThat(query.limit(5).buildCountSql()).isEqualTo("select count(1)  from orders o");
+    }
+
+    @Test
+    void should_reject_group_by() {
+        var query = new PlainSqlBuilder()
+                .select("o.customer_id")
+                .from("orders o")
+                .groupBy("o.customer_id")
+                .limit(5)
+                .deferredJoin("o.id");
+
+        assertThatThrownBy(query::buildSql).isInstanceOf(IllegalStateException.class);
+    }
+}
@@ -0,0 +1,117 @@
+package io.simplequerybuilder;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FingerprintTest {
+
+    @Test
+    void should_be_equal_for_same_structure() {
+        assertThat(orders(1, "NEW").fingerprint()).isEqualTo(orders(2, "PAID").fingerprint());
+        assertThat(orders(1, "NEW").shapeFingerprint()).isEqualTo(orders(2, "PAID").shapeFingerprint());
+    }
+
+    @Test
+    void should_differ_for_optional_criteria() {
+        var fingerprints = new HashSet<Long>();
+        for (int mask = 0; mask < 8; mask++) {
+            var query = new PlainSqlBuilder()
+                    .select("o.*")
+                    .from("orders o")
+                    .andIf((mask & 1) != 0, "o.status = :status", "NEW")
+                    .andIf((mask & 2) != 0, "o.amount > :amount", 10)
+                    .andIf((mask & 4) != 0, "o.customer_id = :customerId", 5);
+            fingerprints.add(query.fingerprint());
+        }
+
+        assertThat(fingerprints).hasSize(8);
+    }
+
+    @Test
+    void should_normalize_inlined_literals_in_shape_only() {
+        var first = new PlainSqlBuilder().select("o.id").from("orders o").where("o.status = 'NEW'").and("o.amount > 10.5");
+        var second = new PlainSqlBuilder().select("o.id").from("orders o").where("o.status = 'it''s'").and("o.amount > 3");
+
+        assertThat(first.fingerprint()).isNotEqualTo(second.fingerprint());
+        assertThat(first.shapeFingerprint()).isEqualTo(second.shapeFingerprint());
+    }
+
+    @Test
+    void should_keep_digits_of_identifiers_in_shape() {
+        var first = new PlainSqlBuilder().select("t1.id").from("orders t1");
+        var second = new PlainSqlBuilder().select("t2.id").from("orders t2");
+
+        assertThat(first.shapeFingerprint()).isNotEqualTo(second.shapeFingerprint());
+    }
+
+    @Test
+    void should_include_paging_values_only_in_exact_fingerprint() {
+        var first = orders(1, "NEW").limit(20).offset(40);
+        var second = orders(1, "NEW").limit(50);
+
+        assertThat(first.fingerprint()).isNotEqualTo(second.fingerprint());
+        assertThat(first.shapeFingerprint()).isNotEqualTo(second.shapeFingerprint());
+        assertThat(first.shapeFingerprint()).isEqualTo(orders(1, "NEW").limit(10).offset(10).shapeFingerprint());
+        assertThat(first.shapeFingerprint()).isNotEqualTo(orders(1, "NEW").shapeFingerprint());
+    }
+
+    @Test
+    void should_follow_rendered_in_list_buckets() {
+        var five = orders(1, "NEW").andIn("o.id", List.of(1, 2, 3, 4, 5));
+        var six = orders(1, "NEW").andIn("o.id", List.of(1, 2, 3, 4, 5, 6));
+        var nine = orders(1, "NEW").andIn("o.id", List.of(1, 2, 3, 4, 5, 6, 7, 8, 9));
+
+        assertThat(five.buildSql()).isEqualTo(six.buildSql());
+        assertThat(five.fingerprint()).isEqualTo(six.fingerprint());
+        assertThat(five.fingerprint()).isNotEqualTo(nine.fingerprint());
+        assertThat(five.shapeFingerprint()).isEqualTo(nine.shapeFingerprint());
+    }
+
+    @Test
+    void should_include_subqueries() {
+        var first = orders(1, "NEW").andIn("o.customer_id", new PlainSqlBuilder().select("c.id").from("customers c"));
+        var second = orders(1, "NEW").andIn("o.customer_id", new PlainSqlBuilder().select("c.id").from("vip_customers c"));
+
+        assertThat(first.fingerprint()).isNotEqualTo(second.fingerprint());
+    }
+
+    @Test
+    void should_differ_for_to_one_joins() {
+        var join = new PlainSqlBuilder().select("o.id").from("orders o").leftJoin("customers c on c.id = o.customer_id");
+        var toOne = new PlainSqlBuilder().select("o.id").from("orders o").leftJoinToOne("customers c on c.id = o.customer_id");
+
+        assertThat(join.buildSql()).isEqualTo(toOne.buildSql());
+        assertThat(join.buildCountSql()).isNotEqualTo(toOne.buildCountSql());
+        assertThat(join.fingerprint()).isNotEqualTo(toOne.fingerprint());
+        assertThat(join.shapeFingerprint()).isNotEqualTo(toOne.shapeFingerprint());
+    }
+
+    @Test
+    void should_not_mistake_moved_text_for_same_structure() {
+        var first = new PlainSqlBuilder().select("a", "b").from("t");
+        var second = new PlainSqlBuilder().select("a, b").from("t");
+        var third = new PlainSqlBuilder().select("a").from("t").orderBy("b");
+
+        assertThat(first.fingerprint()).isNotEqualTo(second.fingerprint());
+        assertThat(first.fingerprint()).isNotEqualTo(third.fingerprint());
+    }
+
+    @Test
+    void should_be_stable_across_runs() {
+        assertThat(new PlainSqlBuilder().select("o.id").from("orders o").fingerprint()).isEqualTo(-1133019311077818699L);
+    }
+
+    private static PlainSqlBuilder orders(long customerId, String status) {
+        return new PlainSqlBuilder()
+                .select("o.*")
+                .from("orders o")
+                .leftJoin("customers c on c.id = o.customer_id")
+                .where("o.customer_id = :customerId", customerId)
+                .and("o.status = :status", status)
+                .orderBy("o.id");
+    }
+}
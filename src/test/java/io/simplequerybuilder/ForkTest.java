@@ -0,0 +1,117 @@
+package io.simplequerybuilder;
+
+import org.junit.jupiter.api.Test;
+
+import static io.simplequerybuilder.utils.TestUtils.inlined;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ForkTest {
+
+    private static PlainSqlBuilder base() {
+        return new PlainSqlBuilder()
+                .select("o.id", "o.amount")
+                .from("orders o")
+                .innerJoin("tenants t on t.id = o.tenant_id")
+                .where("t.id = :tenantId", 1)
+                .defaultOrderBy("o.id");
+    }
+
+    @Test
+    void should_not_change_parent_when_fork_changes() {
+        var base = base();
+        var baseSql = base.buildSql();
+
+        var fork = base.fork()
+                .select("c.name")
+                .leftJoin("customers c on c.id = o.customer_id")
+                .and("o.status = :status", "OPEN")
+                .groupBy("o.id", "o.amount", "c.name")
+                .having("count(1) > 1")
+                .orderBy("o.amount desc")
+                .limit(10);
+
+        assertThat(fork).isNotSameAs(base);
+        assertThat(base.buildSql()).isEqualTo(baseSql);
+        var expected = """
+                select o.id, o.amount, c.name
+                from orders o
+                    inner join tenants t on t.id = o.tenant_id
+                    left join customers c on c.id = o.customer_id
+                where t.id = :tenantId and o.status = :status
+                group by o.id, o.amount, c.name
+                having count(1) > 1
+                order by o.amount desc
+                limit 10""";
+        assertThat(fork.buildSql()).isEqualTo(inlined(expected));
+        assertThat(fork.buildBoundSql(ParameterStyle.POSITIONAL).parameters()).containsExactly(1, "OPEN");
+        assertThat(base.buildBoundSql(ParameterStyle.POSITIONAL).parameters()).containsExactly(1);
+    }
+
+    @Test
+    void should_not_change_fork_when_parent_changes() {
+        var base = base();
+        var fork = base.fork();
+
+        base.and("o.deleted is false").select("o.note");
+
+        assertThat(fork.buildSql()).isEqualTo("""
+                select o.id, o.amount from orders o inner join tenants t on t.id = o.tenant_id \
+                where t.id = :tenantId order by o.id""");
+        assertThat(base.buildSql()).isEqualTo("""
+                select o.id, o.amount, o.note from orders o inner join tenants t on t.id = o.tenant_id \
+                where t.id = :tenantId and o.deleted is false order by o.id""");
+    }
+
+    @Test
+    void should_keep_sibling_forks_apart() {
+        var base = base();
+        var open = base.fork().and("o.status = 'OPEN'");
+        var closed = base.fork().and("o.status = 'CLOSED'");
+        var closedAndPaid = closed.fork().and("o.paid is true");
+
+        assertThat(open.buildWhereStatement()).isEqualTo(" where t.id = :tenantId and o.status = 'OPEN'");
+        assertThat(closed.buildWhereStatement()).isEqualTo(" where t.id = :tenantId and o.status = 'CLOSED'");
+        assertThat(closedAndPaid.buildWhereStatement())
+                .isEqualTo(" where t.id = :tenantId and o.status = 'CLOSED' and o.paid is true");
+        assertThat(base.buildWhereStatement()).isEqualTo(" where t.id = :tenantId");
+    }
+
+    @Test
+    void should_share_clauses_until_they_change() {
+        var base = base();
+        var fork = base.fork().and("o.status = 'OPEN'");
+
+        assertThat(fork.joins).isSameAs(base.joins);
+        assertThat(fork.where).isNotSameAs(base.where);
+    }
+
+    @Test
+    void should_not_let_subclasses_change_shared_clauses() {
+        var base = new PlainSqlBuilder() {
+            void addColumn(String column) {
+                columns().add(column);
+            }
+        };
+        base.select("o.id").from("orders o").where("o.id = 1");
+        var fork = base.fork();
+
+        assertThatThrownBy(() -> base.addColumn("o.amount")).isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> fork.whereStatements().add("and o.id = 2"))
+                .isInstanceOf(UnsupportedOperationException.class);
+        assertThat(fork.columns()).containsExactly("o.id");
+        assertThat(base.buildSql()).isEqualTo(fork.buildSql()).isEqualTo("select o.id from orders o where o.id = 1");
+    }
+
+    @Test
+    void should_fork_specs() {
+        var spec = new Spec().where("o.deleted is false");
+        var fork = spec.fork().and("o.paid is true");
+
+        assertThat(spec.buildFilterStatements()).isEqualTo(" o.deleted is false");
+        assertThat(fork.buildFilterStatements()).isEqualTo(" o.deleted is false and o.paid is true");
+
+        var frozen = spec.freeze();
+        assertThat(frozen.fork()).isSameAs(frozen);
+    }
+}
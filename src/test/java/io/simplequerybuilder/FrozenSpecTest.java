@@ -0,0 +1,95 @@
+package io.simplequerybuilder;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import static io.simplequerybuilder.utils.TestUtils.inlined;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FrozenSpecTest {
+
+    private static final FrozenSpec TENANT = new Spec()
+            .innerJoin("tenants t on t.id = o.tenant_id")
+            .where("t.id = :tenantId")
+            .freeze();
+
+    private static final FrozenSpec NOT_DELETED = new Spec()
+            .where("o.deleted is false")
+            .freeze();
+
+    @Test
+    void should_return_new_instance_on_composition() {
+        var composed = TENANT.and(NOT_DELETED);
+
+        assertThat(composed).isNotSameAs(TENANT);
+        assertThat(TENANT.buildFilterStatements()).isEqualTo(" t.id = :tenantId");
+        assertThat(composed.buildFilterStatements()).isEqualTo(" t.id = :tenantId and o.deleted is false");
+    }
+
+    @Test
+    void should_return_same_instance_when_nothing_changes() {
+        assertThat(TENANT.where("t.id = :tenantId")).isSameAs(TENANT);
+        assertThat(TENANT.freeze()).isSameAs(TENANT);
+    }
+
+    @Test
+    void should_keep_branches_of_the_same_spec_apart() {
+        var deleted = TENANT.and("o.deleted is true");
+        var notDeleted = TENANT.and("o.deleted is false");
+
+        assertThat(deleted.and("o.deleted is false").buildFilterStatements())
+                .isEqualTo(" t.id = :tenantId and o.deleted is true and o.deleted is false");
+        assertThat(notDeleted.and("o.deleted is true").buildFilterStatements())
+                .isEqualTo(" t.id = :tenantId and o.deleted is false and o.deleted is true");
+        assertThat(notDeleted.and("o.deleted is false")).isSameAs(notDeleted);
+        assertThat(TENANT.and("o.deleted is true").buildFilterStatements())
+                .isEqualTo(deleted.buildFilterStatements());
+    }
+
+    @Test
+    void should_render_same_sql_as_mutable_spec() {
+        var mutable = new Spec()
+                .innerJoin("tenants t on t.id = o.tenant_id")
+                .where("t.id = :tenantId")
+                .or("o.public is true");
+
+        var frozenQuery = new PlainSqlBuilder()
+                .select("o.*")
+                .from("orders o")
+                .where(TENANT.or("o.public is true"))
+                .or(NOT_DELETED)
+                .buildSql();
+        var mutableQuery = new PlainSqlBuilder()
+                .select("o.*")
+                .from("orders o")
+                .where(mutable)
+                .or(new Spec().where("o.deleted is false"))
+                .buildSql();
+
+        var expected = """
+                select o.*
+                from orders o
+                    inner join tenants t on t.id = o.tenant_id
+                where t.id = :tenantId or o.public is true
+                    or o.deleted is false""";
+        assertThat(frozenQuery).isEqualTo(inlined(expected)).isEqualTo(mutableQuery);
+    }
+
+    @Test
+    void should_compose_concurrently() {
+        var results = ConcurrentHashMap.<String>newKeySet();
+
+        IntStream.range(0, 1_000).parallel().forEach(i -> results.add(new PlainSqlBuilder()
+                .select("o.*")
+                .from("orders o")
+                .where(TENANT.and(NOT_DELETED))
+                .buildSql()));
+
+        assertThat(List.copyOf(results)).containsExactly("""
+                select o.* from orders o inner join tenants t on t.id = o.tenant_id \
+                where t.id = :tenantId and o.deleted is false""");
+    }
+}
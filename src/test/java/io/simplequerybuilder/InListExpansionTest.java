@@ -0,0 +1,94 @@
+package io.simplequerybuilder;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InListExpansionTest {
+
+    @Test
+    void should_pad_values_to_power_of_two_bucket() {
+        var boundSql = new PlainSqlBuilder()
+                .select("o.*")
+                .from("orders o")
+                .where("o.tenant_id = :tenantId", 1)
+                .andIn("o.id", List.of(10, 20, 30))
+                .buildBoundSql(ParameterStyle.POSITIONAL);
+
+        assertThat(boundSql.sql()).isEqualTo("select o.* from orders o where o.tenant_id = ? and o.id in (?, ?, ?, ?)");
+        assertThat(boundSql.parameters()).containsExactly(1, 10, 20, 30, 30);
+    }
+
+    @Test
+    void should_share_sql_between_lists_in_same_bucket() {
+        var fiveValues = new PlainSqlBuilder()
+                .select("o.*")
+                .from("orders o")
+                .andIn("o.id", range(5))
+                .buildSql();
+        var eightValues = new PlainSqlBuilder()
+                .select("o.*")
+                .from("orders o")
+                .andIn("o.id", range(8))
+                .buildSql();
+
+        assertThat(fiveValues).isEqualTo(eightValues);
+    }
+
+    @Test
+    void should_split_oversized_lists_into_chunks() {
+        var boundSql = new PlainSqlBuilder()
+                .select("o.*")
+                .from("orders o")
+                .andIn("o.id", range(5), InListExpansion.bucketed(2))
+                .buildBoundSql(ParameterStyle.NAMED);
+
+        assertThat(boundSql.sql()).isEqualTo("""
+                select o.* from orders o where (o.id in (:inList1, :inList2) \
+                or o.id in (:inList3, :inList4) \
+                or o.id in (:inList5))""");
+        assertThat(boundSql.parameters()).containsExactly(0, 1, 2, 3, 4);
+    }
+
+    @Test
+    void should_not_pad_exact_lists() {
+        var sql = new PlainSqlBuilder()
+                .select("o.*")
+                .from("orders o")
+                .where("o.tenant_id = :tenantId")
+                .orIn("o.id", range(3), InListExpansion.exact(100))
+                .buildSql();
+
+        assertThat(sql).isEqualTo("select o.* from orders o where o.tenant_id = :tenantId or o.id in (:inList1, :inList2, :inList3)");
+    }
+
+    @Test
+    void should_bind_values_as_array() {
+        var boundSql = new PlainSqlBuilder()
+                .select("o.*")
+                .from("orders o")
+                .andIn("o.id", range(3), InListExpansion.anyArray())
+                .buildBoundSql(ParameterStyle.POSITIONAL);
+
+        assertThat(boundSql.sql()).isEqualTo("select o.* from orders o where o.id = any(?)");
+        assertThat(boundSql.parameters()[0]).isEqualTo(new Object[]{0, 1, 2});
+    }
+
+    @Test
+    void should_render_empty_list_as_false() {
+        var sql = new PlainSqlBuilder()
+                .select("o.*")
+                .from("orders o")
+                .andIn("o.id", List.of())
+                .buildSql();
+
+        assertThat(sql).isEqualTo("select o.* from orders o where 1 = 0");
+    }
+
+    private static List<Integer> range(int size) {
+        return IntStream.range(0, size).boxed().toList();
+    }
+}
@@ -0,0 +1,170 @@
+package io.simplequerybuilder;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class InsertBuilderTest {
+
+    @Test
+    void should_render_multi_row_values() {
+        var statements = new InsertBuilder()
+                .into("orders")
+                .columns("id", "customer_id", "amount")
+                .rows(List.of(new Object[]{1, 10, 100}, new Object[]{2, 20, 200}))
+                .buildBoundSql(ParameterStyle.POSITIONAL);
+
+        assertThat(statements).hasSize(1);
+        assertThat(statements.get(0).sql())
+                .isEqualTo("insert into orders (id, customer_id, amount) values (?, ?, ?), (?, ?, ?)");
+        assertThat(statements.get(0).parameters()).containsExactly(1, 10, 100, 2, 20, 200);
+    }
+
+    @Test
+    void should_render_named_parameters_and_map_rows() {
+        record Order(long id, String status) {
+        }
+
+        var statement = new InsertBuilder()
+                .into("orders")
+                .columns("id", "status")
+                .rows(List.of(new Order(1, "NEW"), new Order(2, "PAID")), order -> new Object[]{order.id(), order.status()})
+                .buildBoundSql(ParameterStyle.NAMED)
+                .get(0);
+
+        assertThat(statement.sql())
+                .isEqualTo("insert into orders (id, status) values (:value1, :value2), (:value3, :value4)");
+        assertThat(statement.parameterNames()).containsExactly("value1", "value2", "value3", "value4");
+        assertThat(statement.parameters()).containsExactly(1L, "NEW", 2L, "PAID");
+    }
+
+    @Test
+    void should_chunk_by_parameter_limit() {
+        var statements = new InsertBuilder()
+                .into("orders")
+                .columns("id", "amount")
+                .rows(rows(7))
+                .maxParameters(6)
+                .buildBoundSql(ParameterStyle.POSITIONAL);
+
+        assertThat(statements).extracting(statement -> statement.parameters().length).containsExactly(6, 6, 2);
+        assertThat(statements.get(2).sql()).isEqualTo("insert into orders (id, amount) values (?, ?)");
+        assertThat(statements.get(2).parameters()).containsExactly(6, 600);
+    }
+
+    @Test
+    void should_chunk_by_byte_limit() {
+        var rows = List.of(new Object[]{1, "a".repeat(40)}, new Object[]{2, "b".repeat(40)},
+                new Object[]{3, "c".repeat(200)}, new Object[]{4, "d"});
+
+        var statements = new InsertBuilder()
+                .into("notes")
+                .columns("id", "text")
+                .rows(rows)
+                .maxBytes(150)
+                .buildBoundSql(ParameterStyle.POSITIONAL);
+
+        assertThat(statements).extracting(statement -> statement.parameters()[0]).containsExactly(1, 3, 4);
+        assertThat(statements).extracting(statement -> statement.parameters().length).containsExactly(4, 2, 2);
+    }
+
+    @Test
+    void should_render_upserts() {
+        var update = new InsertBuilder()
+                .into("orders")
+                .columns("id", "amount", "status")
+                .rows(rows(1, 3))
+                .onConflict("id")
+                .doUpdate("amount", "status")
+                .buildBoundSql(ParameterStyle.POSITIONAL)
+                .get(0);
+        var ignore = new InsertBuilder()
+                .into("orders")
+                .columns("id", "amount", "status")
+                .rows(rows(1, 3))
+                .onConflict()
+                .doNothing()
+                .buildBoundSql(ParameterStyle.POSITIONAL)
+                .get(0);
+
+        assertThat(update.sql()).isEqualTo("insert into orders (id, amount, status) values (?, ?, ?) "
+                + "on conflict (id) do update set amount = excluded.amount, status = excluded.status");
+        assertThat(ignore.sql()).isEqualTo("insert into orders (id, amount, status) values (?, ?, ?) on conflict do nothing");
+    }
+
+    @Test
+    void should_repeat_conflict_clause_in_every_chunk() {
+        var statements = new InsertBuilder()
+                .into("orders")
+                .columns("id", "amount")
+                .rows(rows(3))
+                .onConflict("id")
+                .doNothing()
+                .maxParameters(2)
+                .buildBoundSql(ParameterStyle.POSITIONAL);
+
+        assertThat(statements).hasSize(3).allMatch(statement -> statement.sql().endsWith(" on conflict (id) do nothing"));
+    }
+
+    @Test
+    void should_stream_statements_lazily() {
+        var seen = new ArrayList<Integer>();
+        var rows = IntStream.range(0, 10).mapToObj(i -> new Object[]{i}).collect(Collectors.toList());
+
+        new InsertBuilder()
+                .into("ids")
+                .columns("id")
+                .rows(rows)
+                .maxParameters(4)
+                .forEachStatement(ParameterStyle.POSITIONAL, statement -> seen.add(statement.parameters().length));
+
+        assertThat(seen).containsExactly(4, 4, 2);
+    }
+
+    @Test
+    void should_render_nothing_without_rows() {
+        assertThat(new InsertBuilder().into("orders").columns("id").buildBoundSql(ParameterStyle.POSITIONAL)).isEmpty();
+    }
+
+    @Test
+    void should_reject_invalid_inserts() {
+        assertThatThrownBy(() -> new InsertBuilder().into("orders").buildBoundSql(ParameterStyle.POSITIONAL))
+                .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> new InsertBuilder().into("orders").columns("id", "amount")
+                .rows(List.<Object[]>of(new Object[]{1})).buildBoundSql(ParameterStyle.POSITIONAL))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new InsertBuilder().into("orders").columns("id").doNothing()
+                .rows(rows(1, 1)).buildBoundSql(ParameterStyle.POSITIONAL))
+                .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> new InsertBuilder().into("orders").columns("id", "amount").onConflict()
+                .doUpdate("amount").rows(rows(1)).buildBoundSql(ParameterStyle.POSITIONAL))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("target");
+        assertThatThrownBy(() -> new InsertBuilder().into("orders").columns("id").rows(rows(1, 1)).buildBoundSql(null))
+                .isInstanceOf(NullPointerException.class);
+    }
+
+    private static List<Object[]> rows(int count) {
+        var rows = new ArrayList<Object[]>();
+        for (int i = 0; i < count; i++)
+            rows.add(new Object[]{i, i * 100});
+        return rows;
+    }
+
+    private static List<Object[]> rows(int count, int columns) {
+        var rows = new ArrayList<Object[]>();
+        for (int i = 0; i < count; i++) {
+            var row = new Object[columns];
+            for (int column = 0; column < columns; column++)
+                row[column] = i * 10 + column;
+            rows.add(row);
+        }
+        return rows;
+    }
+}
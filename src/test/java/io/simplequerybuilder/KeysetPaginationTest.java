@@ -0,0 +1,106 @@
+package io.simplequerybuilder;
+
+import org.junit.jupiter.api.Test;
+
+import static io.simplequerybuilder.utils.TestUtils.inlined;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KeysetPaginationTest {
+
+    @Test
+    void should_render_first_page_without_predicate_and_offset() {
+        var sql = new PlainSqlBuilder()
+                .select("o.*")
+                .from("orders o")
+                .orderBy("o.id")
+                .limit(20)
+                .offset(40)
+                .keysetAfter()
+                .buildSql();
+
+        assertThat(sql).isEqualTo("select o.* from orders o order by o.id limit 20");
+    }
+
+    @Test
+    void should_render_tuple_comparison_for_same_directions() {
+        var boundSql = new PlainSqlBuilder()
+                .select("o.*")
+                .from("orders o")
+                .where("o.tenant_id = :tenantId", 1)
+                .orderBy("o.created_date desc", "o.id desc")
+                .limit(20)
+                .keysetAfter("2024-01-01", 42)
+                .buildBoundSql(ParameterStyle.POSITIONAL);
+
+        var expected = """
+                select o.*
+                from orders o
+                where o.tenant_id = ?
+                    and (o.created_date, o.id) < (?, ?)
+                order by o.created_date desc, o.id desc
+                limit 20""";
+        assertThat(boundSql.sql()).isEqualTo(inlined(expected));
+        assertThat(boundSql.parameters()).containsExactly(1, "2024-01-01", 42);
+    }
+
+    @Test
+    void should_expand_comparison_for_mixed_directions() {
+        var sql = new PlainSqlBuilder()
+                .select("o.*")
+                .from("orders o")
+                .defaultOrderBy("o.name asc", "o.id desc")
+                .keysetAfter("acme", 42)
+                .buildSql();
+
+        var expected = """
+                select o.*
+                from orders o
+                where (o.name > :keyset1 or o.name = :keyset2 and o.id < :keyset3)
+                order by o.name asc, o.id desc""";
+        assertThat(sql).isEqualTo(inlined(expected));
+    }
+
+    @Test
+    void should_group_filters_containing_or() {
+        var sql = new PlainSqlBuilder()
+                .select("o.*")
+                .from("orders o")
+                .where("o.status = :open")
+                .or("o.status = :pending")
+                .orderBy("o.id")
+                .keysetAfter(42)
+                .buildSql();
+
+        var expected = """
+                select o.*
+                from orders o
+                where (o.status = :open or o.status = :pending)
+                    and o.id > :keyset1
+                order by o.id""";
+        assertThat(sql).isEqualTo(inlined(expected));
+    }
+
+    @Test
+    void should_ignore_keyset_in_count_query() {
+        var query = new PlainSqlBuilder()
+                .select("o.*")
+                .from("orders o")
+                .where("o.tenant_id = :tenantId")
+                .orderBy("o.id")
+                .keysetAfter(42);
+
+        assertThat(query.buildCountSql()).isEqualTo("select count(1)  from orders o where o.tenant_id = :tenantId");
+    }
+
+    @Test
+    void should_require_one_value_per_order_column() {
+        var query = new PlainSqlBuilder()
+                .select("o.*")
+                .from("orders o")
+                .orderBy("o.created_date", "o.id")
+                .keysetAfter(42);
+
+        assertThatThrownBy(query::buildSql).isInstanceOf(IllegalStateException.class);
+    }
+}
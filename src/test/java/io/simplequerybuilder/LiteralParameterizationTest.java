@@ -0,0 +1,103 @@
+package io.simplequerybuilder;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static io.simplequerybuilder.utils.TestUtils.inlined;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LiteralParameterizationTest {
+
+    @Test
+    void should_replace_where_and_having_literals_with_parameters() {
+        var query = new PlainSqlBuilder()
+                .select("o.customer_id", "count(1)")
+                .from("orders o")
+                .where("o.tenant_id = :tenantId", 7)
+                .and("o.status = 'OPEN'")
+                .and("o.amount > 10.5")
+                .and("o.id <> 42")
+                .groupBy("o.customer_id")
+                .having("count(1) > 2")
+                .parameterizeLiterals();
+
+        var boundSql = query.buildBoundSql(ParameterStyle.POSITIONAL);
+
+        var expected = """
+                select o.customer_id, count(1)
+                from orders o
+                where o.tenant_id = ? and o.status = ? and o.amount > ? and o.id <> ?
+                group by o.customer_id
+                having count(1) > ?""";
+        assertThat(boundSql.sql()).isEqualTo(inlined(expected));
+        assertThat(boundSql.parameters()).containsExactly(7, "OPEN", new BigDecimal("10.5"), 42, 2);
+    }
+
+    @Test
+    void should_share_sql_between_queries_that_differ_in_literals() {
+        var first = new PlainSqlBuilder().select("o.*").from("orders o").where("o.id = " + 1).parameterizeLiterals();
+        var second = new PlainSqlBuilder().select("o.*").from("orders o").where("o.id = " + 2).parameterizeLiterals();
+
+        var firstSql = first.buildBoundSql(ParameterStyle.NAMED);
+        var secondSql = second.buildBoundSql(ParameterStyle.NAMED);
+
+        assertThat(firstSql.sql()).isEqualTo(secondSql.sql()).isEqualTo("select o.* from orders o where o.id = :literal1");
+        assertThat(firstSql.parameters()).containsExactly(1);
+        assertThat(secondSql.parameters()).containsExactly(2);
+    }
+
+    @Test
+    void should_keep_names_casts_and_typed_literals() {
+        var boundSql = new PlainSqlBuilder()
+                .select("o.*")
+                .from("orders o")
+                .where("o.created_date > date '2024-01-01'")
+                .and("t2.code = 'it''s'")
+                .and("\"col 1\" = o.ref::int8")
+                .and("o.name like 'a%' escape '\\'")
+                .parameterizeLiterals()
+                .buildBoundSql(ParameterStyle.POSITIONAL);
+
+        assertThat(boundSql.sql()).isEqualTo("""
+                select o.* from orders o where o.created_date > date '2024-01-01' \
+                and t2.code = ? and "col 1" = o.ref::int8 and o.name like ? escape '\\'""");
+        assertThat(boundSql.parameters()).containsExactly("it's", "a%");
+    }
+
+    @Test
+    void should_keep_type_modifiers_of_casts() {
+        var boundSql = new PlainSqlBuilder()
+                .select("o.*")
+                .from("orders o")
+                .where("cast(o.amount as numeric(10, 2)) > 5")
+                .and("o.amount::numeric(10,2) < 100")
+                .and("cast(o.code as character varying(20)) = 'A1'")
+                .and("o.total in (3, 4)")
+                .parameterizeLiterals()
+                .buildBoundSql(ParameterStyle.POSITIONAL);
+
+        assertThat(boundSql.sql()).isEqualTo("""
+                select o.* from orders o where cast(o.amount as numeric(10, 2)) > ? \
+                and o.amount::numeric(10,2) < ? and cast(o.code as character varying(20)) = ? and o.total in (?, ?)""");
+        assertThat(boundSql.parameters()).containsExactly(5, 100, "A1", 3, 4);
+    }
+
+    @Test
+    void should_leave_literals_of_plain_sql_and_other_clauses() {
+        var query = new PlainSqlBuilder()
+                .select("o.*", "1 as one")
+                .from("orders o")
+                .leftJoin("items i on i.order_id = o.id and i.kind = 'A'")
+                .where("o.status = 'OPEN'")
+                .limit(10)
+                .parameterizeLiterals();
+
+        assertThat(query.buildSql()).isEqualTo("""
+                select o.*, 1 as one from orders o left join items i on i.order_id = o.id and i.kind = 'A' \
+                where o.status = 'OPEN' limit 10""");
+        assertThat(query.buildBoundSql(ParameterStyle.POSITIONAL).sql()).isEqualTo("""
+                select o.*, 1 as one from orders o left join items i on i.order_id = o.id and i.kind = 'A' \
+                where o.status = ? limit 10""");
+    }
+}
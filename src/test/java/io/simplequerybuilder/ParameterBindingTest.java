@@ -0,0 +1,139 @@
+package io.simplequerybuilder;
+
+import org.junit.jupiter.api.Test;
+
+import static io.simplequerybuilder.utils.TestUtils.inlined;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ParameterBindingTest {
+
+    @Test
+    void should_render_positional_parameters_in_order() {
+        var topCustomers = new PlainSqlBuilder()
+                .select("ro.customer_id")
+                .from("orders ro")
+                .where("ro.amount > :minAmount", 100);
+
+        var boundSql = new PlainSqlBuilder()
+                .select("o.*")
+                .from("orders o")
+                .where("o.tenant_id = :tenantId", 7)
+                .andIn("o.customer_id", topCustomers)
+                .or("o.created_date > :startDate::date", "2024-01-01")
+                .groupBy("o.id")
+                .having("count(1) > :minCount")
+                .bind("minCount", 2)
+                .buildBoundSql(ParameterStyle.POSITIONAL);
+
+        var expected = """
+                select o.*
+                from orders o
+                where o.tenant_id = ?
+                    and o.customer_id in (select ro.customer_id from orders ro where ro.amount > ?)
+                    or o.created_date > ?::date
+                group by o.id
+                having count(1) > ?""";
+        assertThat(boundSql.sql()).isEqualTo(inlined(expected));
+        assertThat(boundSql.parameterNames()).containsExactly("tenantId", "minAmount", "startDate", "minCount");
+        assertThat(boundSql.parameters()).containsExactly(7, 100, "2024-01-01", 2);
+    }
+
+    @Test
+    void should_keep_named_parameters_once_per_name() {
+        var dateBetween = new Spec()
+                .where("o.created_date > :startDate", "2024-01-01")
+                .and("o.updated_date > :startDate");
+
+        var boundSql = new PlainSqlBuilder()
+                .select("o.*")
+                .from("orders o")
+                .where(dateBetween)
+                .and("o.note <> ':startDate'")
+                .buildBoundSql(ParameterStyle.NAMED);
+
+        assertThat(boundSql.sql()).isEqualTo("""
+                select o.* from orders o \
+                where o.created_date > :startDate and o.updated_date > :startDate \
+                and o.note <> ':startDate'""");
+        assertThat(boundSql.parameterNames()).containsExactly("startDate");
+        assertThat(boundSql.parameters()).containsExactly("2024-01-01");
+    }
+
+    @Test
+    void should_repeat_parameters_of_reused_subQuery() {
+        var subQuery = new PlainSqlBuilder()
+                .select("c.id")
+                .from("customers c")
+                .where("c.segment = :segment", "gold");
+
+        var boundSql = new PlainSqlBuilder()
+                .select("o.*")
+                .from("orders o")
+                .andIn("o.customer_id", subQuery)
+                .orIn("o.referrer_id", subQuery)
+                .buildBoundSql(ParameterStyle.POSITIONAL);
+
+        assertThat(boundSql.parameters()).containsExactly("gold", "gold");
+    }
+
+    @Test
+    void should_bind_reused_subQuery_again_under_other_parameters() {
+        var subQuery = new PlainSqlBuilder()
+                .select("c.id")
+                .from("customers c")
+                .where("c.segment = :segment");
+        var retail = new PlainSqlBuilder().select("r.id").from("retailers r").andIn("r.id", subQuery).bind("segment", "retail");
+        var wholesale = new PlainSqlBuilder().select("w.id").from("wholesalers w").andIn("w.id", subQuery).bind("segment", "wholesale");
+
+        var boundSql = new PlainSqlBuilder()
+                .select("o.*")
+                .from("orders o")
+                .andIn("o.customer_id", retail)
+                .orIn("o.customer_id", wholesale)
+                .buildBoundSql(ParameterStyle.POSITIONAL);
+
+        assertThat(boundSql.parameters()).containsExactly("retail", "wholesale");
+    }
+
+    @Test
+    void should_carry_parameters_of_frozen_specs() {
+        var tenant = new Spec().where("o.tenant_id = :tenantId").freeze().bind("tenantId", 3);
+
+        var boundSql = new PlainSqlBuilder()
+                .select("o.*")
+                .from("orders o")
+                .where(tenant)
+                .buildBoundCountSql(ParameterStyle.POSITIONAL);
+
+        assertThat(boundSql.sql()).isEqualTo("select count(1)  from orders o where o.tenant_id = ?");
+        assertThat(boundSql.parameters()).containsExactly(3);
+    }
+
+    @Test
+    void should_fail_on_unbound_parameter() {
+        var query = new PlainSqlBuilder()
+                .select("o.*")
+                .from("orders o")
+                .where("o.id = :orderId");
+
+        assertThatThrownBy(() -> query.buildBoundSql(ParameterStyle.POSITIONAL))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining(":orderId");
+    }
+
+    @Test
+    void should_fail_on_conflicting_values() {
+        var query = new PlainSqlBuilder()
+                .where("o.id = :orderId", 1);
+
+        assertThatThrownBy(() -> query.and("o.parent_id = :orderId", 2))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void should_require_a_single_parameter_per_value() {
+        assertThatThrownBy(() -> new Spec().where("o.id between :from and :to", 1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
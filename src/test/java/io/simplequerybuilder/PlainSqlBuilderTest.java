@@ -2,8 +2,12 @@ package io.simplequerybuilder;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static io.simplequerybuilder.utils.TestUtils.inlined;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 class PlainSqlBuilderTest {
 
@@ -384,4 +388,106 @@ class PlainSqlBuilderTest {
         assertThat(firstQuery).isEqualTo(secondQuery);
     }
 
-}
\ No newline at end of file
+    @Test
+    void should_append_sql_to_given_string_builder() {
+        var builder = new PlainSqlBuilder()
+                .select("o.*")
+                .from("orders o")
+                .where("o.id = :orderId");
+        var sql = new StringBuilder("explain ");
+
+        builder.buildSql(sql);
+
+        assertThat(sql.toString()).isEqualTo("explain " + builder.buildSql());
+        assertThat(builder.buildCountSql(new StringBuilder()).toString()).isEqualTo(builder.buildCountSql());
+    }
+
+    @Test
+    void should_trim_nested_spec_filters() {
+        var spec = new Spec()
+                .and(" o.created_date > :startDate ");
+
+        var sql = new PlainSqlBuilder()
+                .select("o.*")
+                .from("orders o")
+                .where(spec)
+                .buildSql();
+
+        assertThat(sql).isEqualTo("select o.* from orders o where o.created_date > :startDate");
+    }
+
+    @Test
+    void should_render_subQuery_changes_made_after_it_is_added() {
+        var subQuery = new PlainSqlBuilder()
+                .select("c.id")
+                .from("customers c");
+        var query = new PlainSqlBuilder()
+                .select("o.*")
+                .from("orders o")
+                .andIn("o.customer_id", subQuery);
+
+        subQuery.where("c.active is true");
+
+        var expected = """
+                select o.*
+                from orders o
+                where o.customer_id in (select c.id from customers c where c.active is true)""";
+        assertThat(query.buildSql()).isEqualTo(inlined(expected));
+    }
+
+    @Test
+    void should_render_reused_subQuery_once_per_build() {
+        var renderCount = new AtomicInteger();
+        var subQuery = new PlainSqlBuilder() {
+            @Override
+            void appendSql(SqlWriter sql, boolean countQuery, boolean includePaging) {
+                renderCount.incrementAndGet();
+                super.appendSql(sql, countQuery, includePaging);
+            }
+        }
+                .select("c.id")
+                .from("customers c");
+        var query = new PlainSqlBuilder()
+                .select("o.*")
+                .from("orders o")
+                .innerJoin(subQuery, "c1")
+                .andIn("o.customer_id", subQuery)
+                .orIn("o.referrer_id", subQuery);
+
+        var sql = query.buildSql();
+
+        var expected = """
+                select o.*
+                from orders o
+                    inner join (select c.id from customers c) c1
+                where o.customer_id in (select c.id from customers c)
+                    or o.referrer_id in (select c.id from customers c)""";
+        assertThat(sql).isEqualTo(inlined(expected));
+        assertThat(renderCount).hasValue(1);
+    }
+
+    @Test
+    void should_reject_composing_spec_that_starts_with_appended_filter() {
+        var tenantFilter = new Spec().append("o.tenant_id = :tenantId");
+
+        assertThatThrownBy(() -> new PlainSqlBuilder().select("o.*").from("orders o").where(tenantFilter))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("o.tenant_id = :tenantId");
+    }
+
+    @Test
+    void should_expose_read_only_statements_to_subclasses() {
+        class TenantSpec extends Spec {
+            TenantSpec() {
+                innerJoin("tenants t on t.id = o.tenant_id");
+                where("t.id = :tenantId");
+            }
+        }
+        var spec = new TenantSpec();
+
+        assertThat(spec.whereStatements()).containsExactly("and t.id = :tenantId");
+        assertThat(spec.joinStatements()).containsExactly("inner join tenants t on t.id = o.tenant_id");
+        assertThat(spec.buildFilterStatements(List.of("or a.id = 1", "and b.id = 2"))).isEqualTo(" a.id = 1 and b.id = 2");
+        assertThatThrownBy(() -> spec.whereStatements().add("and 1 = 0")).isInstanceOf(UnsupportedOperationException.class);
+    }
+}
@@ -0,0 +1,159 @@
+package io.simplequerybuilder;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PredicateSimplificationTest {
+
+    @Test
+    void should_flatten_nested_and_groups() {
+        var spec = new Spec()
+                .where("o.tenant_id = :tenantId")
+                .and(new Spec()
+                        .where("o.deleted is false")
+                        .and(new Spec().where("o.total > 0").and("o.status = 'NEW'")));
+
+        assertThat(spec.buildFilterStatements())
+                .isEqualTo(" o.tenant_id = :tenantId and o.deleted is false and o.total > 0 and o.status = 'NEW'");
+    }
+
+    @Test
+    void should_keep_parentheses_around_alternatives() {
+        var spec = new Spec()
+                .where("o.tenant_id = :tenantId")
+                .and(new Spec().where("o.public is true").or("o.owner_id = :userId"))
+                .and(new Spec().where("o.status = 'NEW' or o.status = 'OPEN'"));
+
+        assertThat(spec.buildFilterStatements()).isEqualTo("""
+                 o.tenant_id = :tenantId \
+                and (o.public is true or o.owner_id = :userId) \
+                and (o.status = 'NEW' or o.status = 'OPEN')""");
+    }
+
+    @Test
+    void should_flatten_or_groups_only_inside_a_chain_of_ors() {
+        var alternatives = new Spec().where("o.public is true").or("o.owner_id = :userId");
+
+        assertThat(new Spec().where("o.shared is true").or(alternatives).buildFilterStatements())
+                .isEqualTo(" o.shared is true or o.public is true or o.owner_id = :userId");
+        assertThat(new Spec().and(alternatives).buildFilterStatements())
+                .isEqualTo(" (o.public is true or o.owner_id = :userId)");
+        assertThat(new Spec().and(alternatives).and("o.tenant_id = :tenantId").buildFilterStatements())
+                .isEqualTo(" (o.public is true or o.owner_id = :userId) and o.tenant_id = :tenantId");
+    }
+
+    @Test
+    void should_remove_duplicate_and_always_true_predicates() {
+        var spec = new Spec()
+                .where("1 = 1")
+                .and("o.tenant_id = :tenantId")
+                .and(new Spec().where("o.tenant_id = :tenantId").and("true"))
+                .and(new Spec().where("o.deleted is false"))
+                .and("o.deleted is false");
+
+        assertThat(spec.buildFilterStatements()).isEqualTo(" o.tenant_id = :tenantId and o.deleted is false");
+    }
+
+    @Test
+    void should_keep_duplicates_next_to_an_inline_or() {
+        var spec = new Spec()
+                .where("o.public is true")
+                .and("o.shared is true or o.owner_id = :userId")
+                .and(new Spec().where("o.public is true").and("o.deleted is false"));
+
+        assertThat(spec.buildFilterStatements()).isEqualTo("""
+                 o.public is true and o.shared is true or o.owner_id = :userId \
+                and o.public is true and o.deleted is false""");
+    }
+
+    @Test
+    void should_recognize_spaced_and_parenthesized_always_true_predicates() {
+        var spec = new Spec()
+                .where("o.tenant_id = :tenantId")
+                .and("( (1=1) )")
+                .and("TRUE")
+                .and("1 = 1 = 1")
+                .and("(true) is not null");
+
+        assertThat(spec.buildFilterStatements())
+                .isEqualTo(" o.tenant_id = :tenantId and 1 = 1 = 1 and (true) is not null");
+    }
+
+    @Test
+    void should_keep_always_true_predicates_that_change_the_meaning() {
+        var spec = new Spec().where("o.public is true").or("1 = 1");
+
+        assertThat(spec.buildFilterStatements()).isEqualTo(" o.public is true or 1 = 1");
+    }
+
+    @Test
+    void should_not_report_top_level_or_introduced_by_flattening() {
+        var sql = new PlainSqlBuilder()
+                .select("o.*")
+                .from("orders o")
+                .where(new Spec().where("o.public is true").or("o.owner_id = :userId"))
+                .defaultOrderBy("o.id")
+                .keysetAfter(42)
+                .buildSql();
+
+        assertThat(sql).isEqualTo("""
+                select o.* from orders o \
+                where (o.public is true or o.owner_id = :userId) and o.id > :keyset1 \
+                order by o.id""");
+    }
+
+    @Test
+    void should_group_filters_with_inline_or_before_keyset_predicate() {
+        var query = new PlainSqlBuilder()
+                .select("o.*")
+                .from("orders o")
+                .where("o.public is true or o.owner_id = :userId")
+                .defaultOrderBy("o.id")
+                .keysetAfter(42);
+
+        assertThat(query.hasTopLevelOr()).isTrue();
+        assertThat(query.buildSql()).isEqualTo("""
+                select o.* from orders o \
+                where (o.public is true or o.owner_id = :userId) and o.id > :keyset1 \
+                order by o.id""");
+        assertThat(new PlainSqlBuilder().select("o.*").from("orders o")
+                .andIn("o.id", new PlainSqlBuilder().select("s.id").from("shared s").where("s.a = 1 or s.b = 2"))
+                .hasTopLevelOr()).isFalse();
+    }
+
+    @Test
+    void should_merge_or_equalities_on_the_same_column_when_enabled() {
+        var statuses = new Spec()
+                .where("o.status = :s1")
+                .or("o.customer_id = 3")
+                .or("o.status = :s2")
+                .or("o.status = 'OPEN'");
+        var query = new PlainSqlBuilder()
+                .select("o.id")
+                .from("orders o")
+                .where("o.tenant_id = :tenantId")
+                .where(statuses);
+
+        assertThat(query.buildSql()).isEqualTo("""
+                select o.id from orders o where o.tenant_id = :tenantId \
+                and (o.status = :s1 or o.customer_id = 3 or o.status = :s2 or o.status = 'OPEN')""");
+        assertThat(query.mergeOrEqualities().buildSql()).isEqualTo("""
+                select o.id from orders o where o.tenant_id = :tenantId \
+                and (o.status in (:s1, :s2, 'OPEN') or o.customer_id = 3)""");
+    }
+
+    @Test
+    void should_not_merge_equalities_joined_by_and() {
+        var sql = new PlainSqlBuilder()
+                .select("o.id")
+                .from("orders o")
+                .where("o.status = :s1")
+                .and("o.status = :s2")
+                .or("o.status = :s3")
+                .mergeOrEqualities()
+                .buildSql();
+
+        assertThat(sql).isEqualTo("select o.id from orders o where o.status = :s1 and o.status = :s2 or o.status = :s3");
+    }
+}
@@ -0,0 +1,83 @@
+package io.simplequerybuilder;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class QueryListenerTest {
+
+    @Test
+    void should_report_builds_to_builder_listener() {
+        var events = new ArrayList<BuildEvent>();
+        QueryListener listener = new QueryListener() {
+            @Override
+            public void onBuild(BuildEvent event) {
+                events.add(event);
+            }
+        };
+        var query = new PlainSqlBuilder()
+                .listener(listener)
+                .select("o.*")
+                .from("orders o")
+                .leftJoin("customers c on c.id = o.customer_id")
+                .where("o.status = 'NEW'")
+                .andIn("o.customer_id", new PlainSqlBuilder().select("v.id").from("vips v"))
+                .limit(10);
+
+        var sql = query.buildSql();
+        var countSql = query.buildCountSql();
+
+        assertThat(events).hasSize(2);
+        var build = events.get(0);
+        assertThat(build.countQuery()).isFalse();
+        assertThat(build.length()).isEqualTo(sql.length());
+        assertThat(build.fragments()).isEqualTo(3);
+        assertThat(build.subQueries()).isEqualTo(1);
+        assertThat(build.renderNanos()).isPositive();
+        assertThat(build.shapeFingerprint()).isEqualTo(query.shapeFingerprint());
+        assertThat(events.get(1).countQuery()).isTrue();
+        assertThat(events.get(1).length()).isEqualTo(countSql.length());
+    }
+
+    @Test
+    void should_report_builds_to_global_listener_unless_builder_has_one() {
+        var global = new QueryMetrics();
+        var local = new QueryMetrics();
+        QueryListener.setGlobal(global);
+        try {
+            var query = new PlainSqlBuilder().select("o.id").from("orders o");
+            query.buildSql();
+            query.buildBoundCountSql(ParameterStyle.POSITIONAL);
+            new PlainSqlBuilder().listener(local).select("o.id").from("orders o").buildSql();
+
+            var shape = query.shapeFingerprint();
+            assertThat(global.timer(QueryMetrics.BUILD_TIMER, shape).count()).isEqualTo(1);
+            assertThat(global.timer(QueryMetrics.COUNT_BUILD_TIMER, shape).count()).isEqualTo(1);
+            assertThat(local.timer(QueryMetrics.BUILD_TIMER, shape).count()).isEqualTo(1);
+        } finally {
+            QueryListener.setGlobal(null);
+        }
+        assertThat(QueryListener.global()).isSameAs(QueryListener.NOOP);
+    }
+
+    @Test
+    void should_aggregate_timers_per_shape() {
+        var metrics = new QueryMetrics();
+        metrics.onExecution(new ExecutionEvent("select 1", 42, 10, 2_000_000, 1_000_000, null));
+        metrics.onExecution(new ExecutionEvent("select 1", 42, 5, 4_000_000, 3_000_000, null));
+        metrics.onExecution(new ExecutionEvent("select 2", 0, 0, 1_000_000, 0, new RuntimeException()));
+
+        var execute = metrics.timer(QueryMetrics.EXECUTE_TIMER, 42);
+        assertThat(execute.count()).isEqualTo(2);
+        assertThat(execute.totalTime(TimeUnit.MILLISECONDS)).isEqualTo(6.0);
+        assertThat(execute.max(TimeUnit.MILLISECONDS)).isEqualTo(4.0);
+        assertThat(metrics.timer(QueryMetrics.FETCH_TIMER, 42).amount()).isEqualTo(15);
+        assertThat(metrics.timers()).containsKey(new QueryMetrics.Key(QueryMetrics.EXECUTE_TIMER, "unknown"));
+        assertThat(metrics.timer(QueryMetrics.EXECUTE_TIMER, 0).amount()).isEqualTo(1);
+        assertThat(List.copyOf(metrics.timers().keySet())).extracting(QueryMetrics.Key::shape).contains("2a");
+    }
+}
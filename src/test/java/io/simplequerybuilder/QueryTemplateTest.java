@@ -0,0 +1,107 @@
+package io.simplequerybuilder;
+
+import org.junit.jupiter.api.Test;
+
+import static io.simplequerybuilder.utils.TestUtils.inlined;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class QueryTemplateTest {
+
+    private final QueryTemplate<PlainSqlBuilder> template = new QueryTemplate<>(() -> new PlainSqlBuilder()
+            .select("o.*")
+            .from("orders o")
+            .where("o.tenant_id = :tenantId")
+            .orderBy("o.id"))
+            .optional("o.status = :status")
+            .optional(new Spec()
+                    .where("o.created_date > :startDate")
+                    .and("o.created_date <= :endDate"));
+
+    @Test
+    void should_render_only_active_criteria() {
+        var expected = """
+                select o.*
+                from orders o
+                where o.tenant_id = :tenantId
+                    and o.created_date > :startDate and o.created_date <= :endDate
+                order by o.id""";
+
+        assertThat(template.buildSql(false, true)).isEqualTo(inlined(expected));
+        assertThat(template.buildSql()).isEqualTo("select o.* from orders o where o.tenant_id = :tenantId order by o.id");
+    }
+
+    @Test
+    void should_render_same_sql_as_andIf_builder() {
+        boolean hasStatus = true;
+        boolean hasDates = false;
+        var builder = new PlainSqlBuilder()
+                .select("o.*")
+                .from("orders o")
+                .where("o.tenant_id = :tenantId")
+                .orderBy("o.id")
+                .andIf(hasStatus, "o.status = :status")
+                .andIf(hasDates, new Spec().where("o.created_date > :startDate"));
+
+        assertThat(template.buildSql(hasStatus, hasDates)).isEqualTo(builder.buildSql());
+        assertThat(template.buildCountSql(hasStatus, hasDates)).isEqualTo(builder.buildCountSql());
+    }
+
+    @Test
+    void should_reuse_cached_sql_per_shape() {
+        var first = template.buildSql(true, false);
+        var second = template.buildSql(0b01L);
+
+        assertThat(second).isSameAs(first);
+        assertThat(template.buildSql(0b101L)).isSameAs(first);
+        assertThat(template.cachedShapes()).isEqualTo(1);
+    }
+
+    @Test
+    void should_not_cache_more_shapes_than_allowed() {
+        var bounded = new QueryTemplate<>(() -> new PlainSqlBuilder().select("o.*").from("orders o"), 1)
+                .optional("o.status = :status");
+
+        bounded.buildSql(true);
+        bounded.buildSql(false);
+
+        assertThat(bounded.cachedShapes()).isEqualTo(1);
+        assertThat(bounded.buildSql(false)).isEqualTo("select o.* from orders o");
+    }
+
+    @Test
+    void should_not_serve_sql_cached_before_a_criterion_was_added() {
+        var growing = new QueryTemplate<>(() -> new PlainSqlBuilder().select("o.*").from("orders o"))
+                .optional("o.status = :status");
+        var before = growing.buildSql(0b11L);
+
+        growing.optional("o.total > 0");
+
+        assertThat(before).isEqualTo("select o.* from orders o where o.status = :status");
+        assertThat(growing.buildSql(0b11L))
+                .isEqualTo("select o.* from orders o where o.status = :status and o.total > 0");
+    }
+
+    @Test
+    void should_build_while_criteria_are_added() {
+        var growing = new QueryTemplate<>(() -> new PlainSqlBuilder().select("o.*").from("orders o"));
+        var writer = new Thread(() -> {
+            for (int i = 0; i < Long.SIZE; i++)
+                growing.optional("o.c" + i + " = " + i);
+        });
+
+        writer.start();
+        while (writer.isAlive()) {
+            var sql = growing.buildSql(-1L);
+            int criteria = sql.contains(" where ") ? sql.split(" and ").length : 0;
+            assertThat(sql).endsWith(criteria == 0 ? "orders o" : "o.c" + (criteria - 1) + " = " + (criteria - 1));
+        }
+        assertThat(growing.buildSql(-1L)).endsWith("o.c63 = 63");
+    }
+
+    @Test
+    void should_reject_unknown_conditions() {
+        assertThatThrownBy(() -> template.buildSql(true, true, true))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,80 @@
+package io.simplequerybuilder;
+
+import org.junit.jupiter.api.Test;
+
+import static io.simplequerybuilder.utils.TestUtils.inlined;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TotalCountQueryTest {
+
+    private final PlainSqlBuilder query = new PlainSqlBuilder()
+            .select("o.customer_id", "count(1) as orders")
+            .from("orders o")
+            .where("o.tenant_id = :tenantId", 1)
+            .groupBy("o.customer_id")
+            .orderBy("o.customer_id")
+            .limit(10)
+            .offset(20);
+
+    @Test
+    void should_add_window_count_to_select_list() {
+        var expected = """
+                select o.customer_id, count(1) as orders, count(*) over() as total_count
+                from orders o
+                where o.tenant_id = :tenantId
+                group by o.customer_id
+                order by o.customer_id
+                limit 10 offset 20""";
+
+        assertThat(query.buildSqlWithTotalCount()).isEqualTo(inlined(expected));
+    }
+
+    @Test
+    void should_count_unpaged_query_in_cte() {
+        var boundSql = query.buildBoundSqlWithTotalCount(TotalCountStrategy.CTE, ParameterStyle.POSITIONAL);
+
+        var expected = """
+                with page_total as (select count(1) as total_count
+                                    from (select o.customer_id, count(1) as orders
+                                          from orders o
+                                          where o.tenant_id = ?
+                                          group by o.customer_id) page_rows)
+                select o.customer_id, count(1) as orders, (select total_count from page_total) as total_count
+                from orders o
+                where o.tenant_id = ?
+                group by o.customer_id
+                order by o.customer_id
+                limit 10 offset 20""";
+        assertThat(boundSql.sql()).isEqualTo(inlined(expected));
+        assertThat(boundSql.parameters()).containsExactly(1, 1);
+    }
+
+    @Test
+    void should_count_keyset_page_without_seek_predicate_in_both_strategies() {
+        var keysetQuery = new PlainSqlBuilder()
+                .select("o.id")
+                .from("orders o")
+                .where("o.tenant_id = :tenantId", 1)
+                .defaultOrderBy("o.id")
+                .keysetAfter(42)
+                .limit(10);
+
+        var window = """
+                select o.id, (select count(1) from (select o.id from orders o where o.tenant_id = ?) page_rows) as total_count
+                from orders o
+                where o.tenant_id = ? and o.id > ?
+                order by o.id
+                limit 10""";
+        var cte = """
+                with page_total as (select count(1) as total_count from (select o.id from orders o where o.tenant_id = ?) page_rows)
+                select o.id, (select total_count from page_total) as total_count
+                from orders o
+                where o.tenant_id = ? and o.id > ?
+                order by o.id
+                limit 10""";
+        assertThat(keysetQuery.buildBoundSqlWithTotalCount(TotalCountStrategy.WINDOW, ParameterStyle.POSITIONAL).sql())
+                .isEqualTo(inlined(window));
+        assertThat(keysetQuery.buildBoundSqlWithTotalCount(TotalCountStrategy.CTE, ParameterStyle.POSITIONAL).sql())
+                .isEqualTo(inlined(cte));
+    }
+}
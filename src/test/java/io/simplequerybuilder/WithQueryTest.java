@@ -0,0 +1,233 @@
+package io.simplequerybuilder;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static io.simplequerybuilder.utils.TestUtils.inlined;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class WithQueryTest {
+
+    @Test
+    void should_render_named_queries_before_select() {
+        var recent = new PlainSqlBuilder()
+                .select("o.customer_id", "sum(o.amount) as amount")
+                .from("orders o")
+                .where("o.created > :since", "2024-01-01")
+                .groupBy("o.customer_id");
+        var query = new PlainSqlBuilder()
+                .withMaterialized("recent", recent)
+                .select("c.name", "r.amount")
+                .from("customers c")
+                .innerJoin("recent r on r.customer_id = c.id")
+                .where("c.active = :active", true);
+
+        var expected = """
+                with recent as materialized (select o.customer_id, sum(o.amount) as amount from orders o
+                    where o.created > ? group by o.customer_id)
+                select c.name, r.amount
+                from customers c
+                    inner join recent r on r.customer_id = c.id
+                where c.active = ?""";
+        var boundSql = query.buildBoundSql(ParameterStyle.POSITIONAL);
+        assertThat(boundSql.sql()).isEqualTo(inlined(expected));
+        assertThat(boundSql.parameters()).containsExactly("2024-01-01", true);
+    }
+
+    @Test
+    void should_reference_named_query_instances_by_name() {
+        var vips = new PlainSqlBuilder().select("v.id").from("vips v");
+        var query = new PlainSqlBuilder()
+                .with("vip", vips)
+                .select("o.*")
+                .from("orders o")
+                .leftJoin(vips, "v1")
+                .andIn("o.customer_id", vips);
+
+        var expected = """
+                with vip as (select v.id from vips v)
+                select o.*
+                from orders o
+                    left join (select * from vip) v1
+                where o.customer_id in (select * from vip)""";
+        assertThat(query.buildSql()).isEqualTo(inlined(expected));
+    }
+
+    @Test
+    void should_hoist_registered_subqueries_used_more_than_once() {
+        var active = new PlainSqlBuilder()
+                .select("c.id")
+                .from("customers c")
+                .where("c.active = :active", true);
+        var query = new PlainSqlBuilder()
+                .hoistSharedSubQuery(active)
+                .select("o.*")
+                .from("orders o")
+                .innerJoin(active, "c1")
+                .andIn("o.customer_id", active)
+                .orIn("o.referrer_id", active)
+                .andIn("o.region_id", new PlainSqlBuilder().select("r.id").from("regions r"));
+
+        var expected = """
+                with shared_1 as (select c.id from customers c where c.active = :active)
+                select o.*
+                from orders o
+                    inner join (select * from shared_1) c1
+                where o.customer_id in (select * from shared_1)
+                    or o.referrer_id in (select * from shared_1)
+                    and o.region_id in (select r.id from regions r)""";
+        assertThat(query.buildSql()).isEqualTo(inlined(expected));
+        assertThat(query.buildBoundSql(ParameterStyle.POSITIONAL).parameters()).containsExactly(true);
+    }
+
+    @Test
+    void should_define_nested_shared_subqueries_first() {
+        var inner = new PlainSqlBuilder().select("v.id").from("vips v");
+        var outer = new PlainSqlBuilder().select("c.id").from("customers c").andIn("c.id", inner).orIn("c.parent_id", inner);
+        var query = new PlainSqlBuilder()
+                .hoistSharedSubQuery(inner)
+                .hoistSharedSubQuery(outer)
+                .select("o.*")
+                .from("orders o")
+                .andIn("o.customer_id", outer)
+                .orIn("o.referrer_id", outer);
+
+        assertThat(query.buildSql()).startsWith("with shared_1 as (select v.id from vips v), shared_2 as (select c.id "
+                + "from customers c where c.id in (select * from shared_1) or c.parent_id in (select * from shared_1)) "
+                + "select o.* from orders o where o.customer_id in (select * from shared_2)");
+    }
+
+    @Test
+    void should_bind_parameters_of_the_builders_a_hoisted_subquery_is_used_in() {
+        var active = new PlainSqlBuilder().select("c.id").from("customers c").where("c.segment = :segment");
+        var regional = new PlainSqlBuilder()
+                .select("r.customer_id")
+                .from("regional_customers r")
+                .andIn("r.customer_id", active)
+                .orIn("r.referrer_id", active)
+                .bind("segment", "retail");
+        var query = new PlainSqlBuilder()
+                .hoistSharedSubQuery(active)
+                .select("o.*")
+                .from("orders o")
+                .andIn("o.customer_id", regional);
+
+        var boundSql = query.buildBoundSql(ParameterStyle.POSITIONAL);
+
+        assertThat(boundSql.sql()).startsWith("with shared_1 as (select c.id from customers c where c.segment = ?) ");
+        assertThat(boundSql.parameters()).containsExactly("retail");
+    }
+
+    @Test
+    void should_not_hoist_subqueries_used_under_different_parameters() {
+        var active = new PlainSqlBuilder().select("c.id").from("customers c").where("c.segment = :segment");
+        var retail = new PlainSqlBuilder().select("r.id").from("retailers r").andIn("r.id", active).bind("segment", "retail");
+        var wholesale = new PlainSqlBuilder().select("w.id").from("wholesalers w").andIn("w.id", active).bind("segment", "wholesale");
+        var query = new PlainSqlBuilder()
+                .hoistSharedSubQuery(active)
+                .select("o.*")
+                .from("orders o")
+                .andIn("o.customer_id", retail)
+                .orIn("o.customer_id", wholesale);
+
+        var boundSql = query.buildBoundSql(ParameterStyle.POSITIONAL);
+
+        assertThat(boundSql.sql()).startsWith("select o.*");
+        assertThat(boundSql.parameters()).containsExactly("retail", "wholesale");
+    }
+
+    @Test
+    void should_not_hoist_lateral_subqueries() {
+        var lastOrder = new PlainSqlBuilder().select("o.id").from("orders o").where("o.customer_id = c.id").limit(1);
+        var query = new PlainSqlBuilder()
+                .hoistSharedSubQuery(lastOrder)
+                .select("c.*")
+                .from("customers c")
+                .leftJoinLateral(lastOrder, "l1")
+                .andIn("c.last_order_id", lastOrder);
+
+        assertThat(query.buildSql()).startsWith("select c.*");
+    }
+
+    @Test
+    void should_not_hoist_unregistered_subqueries() {
+        var lastOrder = new PlainSqlBuilder().select("max(o.id)").from("orders o").where("o.customer_id = c.id");
+        var active = new PlainSqlBuilder().select("a.id").from("active_customers a");
+        var query = new PlainSqlBuilder()
+                .hoistSharedSubQuery(active)
+                .select("c.*")
+                .from("customers c")
+                .andIn("c.last_order_id", lastOrder)
+                .orIn("c.first_order_id", lastOrder);
+
+        assertThat(query.buildSql()).isEqualTo("select c.* from customers c where c.last_order_id in (select max(o.id) "
+                + "from orders o where o.customer_id = c.id) or c.first_order_id in (select max(o.id) from orders o "
+                + "where o.customer_id = c.id)");
+    }
+
+    @Test
+    void should_union_all_queries() {
+        var archived = new PlainSqlBuilder().select("a.id").from("archived_orders a").where("a.customer_id = :customerId", 7);
+        var recent = new PlainSqlBuilder().select("r.id").from("recent_orders r").orderBy("r.id desc").limit(5);
+        var query = new PlainSqlBuilder()
+                .select("o.id")
+                .from("orders o")
+                .where("o.customer_id = :customerId", 7)
+                .unionAll(archived)
+                .unionAll(recent)
+                .orderBy("id")
+                .limit(10);
+
+        var expected = """
+                select o.id from orders o where o.customer_id = ?
+                union all select a.id from archived_orders a where a.customer_id = ?
+                union all (select r.id from recent_orders r order by r.id desc limit 5)
+                order by id limit 10""";
+        var boundSql = query.buildBoundSql(ParameterStyle.POSITIONAL);
+        assertThat(boundSql.sql()).isEqualTo(inlined(expected));
+        assertThat(boundSql.parameters()).containsExactly(7, 7);
+        assertThat(query.buildCountSql()).isEqualTo("select count(1) from (select o.id from orders o "
+                + "where o.customer_id = :customerId union all select a.id from archived_orders a where a.customer_id = :customerId "
+                + "union all (select r.id from recent_orders r order by r.id desc limit 5)) union_rows");
+    }
+
+    @Test
+    void should_merge_with_clause_into_total_count_cte() {
+        var vips = new PlainSqlBuilder().select("v.id").from("vips v");
+        var query = new PlainSqlBuilder()
+                .with("vip", vips)
+                .select("o.id")
+                .from("orders o")
+                .andIn("o.customer_id", vips)
+                .limit(5);
+
+        assertThat(query.buildSqlWithTotalCount(TotalCountStrategy.CTE))
+                .startsWith("with vip as (select v.id from vips v), page_total as (select count(1) as total_count");
+        assertThat(query.buildCappedCountSql(100)).startsWith("with vip as (select v.id from vips v) select count(1) from");
+    }
+
+    @Test
+    void should_reject_unions_with_page_features() {
+        var query = new PlainSqlBuilder()
+                .select("o.id")
+                .from("orders o")
+                .unionAll(new PlainSqlBuilder().select("a.id").from("archived_orders a"))
+                .orderBy("id")
+                .limit(10);
+
+        assertThatThrownBy(query::buildSqlWithTotalCount).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> query.buildCappedCountSql(10)).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> query.keysetAfter(1).buildSql()).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void should_include_named_queries_in_fingerprint() {
+        var first = new PlainSqlBuilder().with("x", new PlainSqlBuilder().select("1").from("a")).select("*").from("x");
+        var second = new PlainSqlBuilder().with("x", new PlainSqlBuilder().select("1").from("b")).select("*").from("x");
+
+        assertThat(first.fingerprint()).isNotEqualTo(second.fingerprint());
+        assertThat(List.of(first.buildSql(), second.buildSql())).doesNotHaveDuplicates();
+    }
+}
@@ -0,0 +1,135 @@
+package io.simplequerybuilder.jdbc;
+
+import io.simplequerybuilder.PlainSqlBuilder;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AsyncQueryExecutorTest {
+    private JdbcDataSource dataSource;
+    private Connection keepAlive;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + getClass().getSimpleName() + ";DB_CLOSE_DELAY=-1");
+        keepAlive = dataSource.getConnection();
+        try (var statement = keepAlive.createStatement()) {
+            statement.execute("create table orders (id bigint primary key, customer_id bigint)");
+            statement.execute("insert into orders select x, mod(x, 10) from system_range(1, 1000)");
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        try (var statement = keepAlive.createStatement()) {
+            statement.execute("drop all objects");
+        }
+        keepAlive.close();
+    }
+
+    @Test
+    void should_combine_page_rows_with_total() {
+        var query = new PlainSqlBuilder()
+                .select("o.id")
+                .from("orders o")
+                .where("o.customer_id = :customerId", 4)
+                .orderBy("o.id")
+                .limit(3)
+                .offset(1);
+
+        try (var executor = new AsyncQueryExecutor(new QueryExecutor(dataSource))) {
+            var page = executor.page(query, resultSet -> resultSet.getLong(1)).join();
+
+            assertThat(page.rows()).containsExactly(14L, 24L, 34L);
+            assertThat(page.total()).isEqualTo(100);
+        }
+    }
+
+    @Test
+    void should_run_page_and_count_queries_concurrently() throws InterruptedException {
+        var pool = Executors.newFixedThreadPool(2);
+        var bothStarted = new CountDownLatch(2);
+        var threads = ConcurrentHashMap.<String>newKeySet();
+        var query = new PlainSqlBuilder()
+                .select("o.id")
+                .from("orders o")
+                .limit(1);
+
+        var executor = new AsyncQueryExecutor(new QueryExecutor(dataSource), task -> pool.execute(() -> {
+            threads.add(Thread.currentThread().getName());
+            bothStarted.countDown();
+            await(bothStarted);
+            task.run();
+        }));
+        var page = executor.page(query, resultSet -> resultSet.getLong(1)).join();
+
+        assertThat(page.total()).isEqualTo(1000);
+        assertThat(threads).hasSize(2);
+        pool.shutdown();
+        assertThat(pool.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void should_render_queries_before_returning() {
+        var query = new PlainSqlBuilder()
+                .select("o.id")
+                .from("orders o")
+                .where("o.customer_id = :customerId", 4)
+                .limit(5);
+        var pool = Executors.newSingleThreadExecutor();
+        var release = new CountDownLatch(1);
+        pool.execute(() -> await(release));
+
+        var executor = new AsyncQueryExecutor(new QueryExecutor(dataSource), pool);
+        var page = executor.page(query, resultSet -> resultSet.getLong(1));
+        query.and("o.id < 0");
+        release.countDown();
+
+        assertThat(page.join().total()).isEqualTo(100);
+        pool.shutdown();
+    }
+
+    @Test
+    void should_fail_page_when_a_query_fails() {
+        var query = new PlainSqlBuilder()
+                .select("o.missing")
+                .from("orders o");
+
+        try (var executor = new AsyncQueryExecutor(new QueryExecutor(dataSource))) {
+            assertThatThrownBy(() -> executor.page(query, resultSet -> resultSet.getLong(1)).join())
+                    .isInstanceOf(CompletionException.class)
+                    .hasCauseInstanceOf(QueryExecutionException.class);
+        }
+    }
+
+    @Test
+    void should_run_default_executor_on_daemon_threads() throws Exception {
+        var executor = AsyncQueryExecutor.defaultExecutor(2);
+
+        assertThat(executor.submit(() -> Thread.currentThread().isDaemon()).get()).isTrue();
+        executor.shutdown();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            if (!latch.await(5, TimeUnit.SECONDS))
+                throw new IllegalStateException("timed out");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package io.simplequerybuilder.jdbc;
+
+import io.simplequerybuilder.BoundSql;
+import io.simplequerybuilder.ParameterStyle;
+import io.simplequerybuilder.PlainSqlBuilder;
+import io.simplequerybuilder.Spec;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OrEqualityPlanTest {
+    private JdbcDataSource dataSource;
+    private Connection keepAlive;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + getClass().getSimpleName() + ";DB_CLOSE_DELAY=-1");
+        keepAlive = dataSource.getConnection();
+        try (var statement = keepAlive.createStatement()) {
+            statement.execute("create table orders (id bigint primary key, status varchar(10), customer_id bigint)");
+            statement.execute("create index orders_status on orders (status)");
+            statement.execute("insert into orders select x, 'S' || mod(x, 20), mod(x, 7) from system_range(1, 2000)");
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        try (var statement = keepAlive.createStatement()) {
+            statement.execute("drop all objects");
+        }
+        keepAlive.close();
+    }
+
+    @Test
+    void should_plan_merged_equalities_as_in_list() throws SQLException {
+        var plain = query();
+        var merged = query().mergeOrEqualities();
+
+        var plainPlan = explain(plain.buildBoundSql(ParameterStyle.POSITIONAL));
+        var mergedPlan = explain(merged.buildBoundSql(ParameterStyle.POSITIONAL));
+
+        assertThat(plainPlan).doesNotContain("IN(");
+        assertThat(mergedPlan).contains("\"O\".\"STATUS\" IN(?1, ?2)");
+        assertThat(merged.buildBoundSql(ParameterStyle.POSITIONAL).parameters()).containsExactly("S1", "S2", 3);
+
+        var executor = new QueryExecutor(dataSource);
+        assertThat(executor.list(merged, resultSet -> resultSet.getLong(1)))
+                .containsExactlyElementsOf(executor.list(plain, resultSet -> resultSet.getLong(1)))
+                .isNotEmpty();
+    }
+
+    @Test
+    void should_use_index_for_merged_equalities_on_one_column() throws SQLException {
+        var statuses = new Spec().where("o.status = :s1", "S1").or("o.status = :s2", "S2").or("o.status = 'S3'");
+        var query = new PlainSqlBuilder()
+                .select("o.id")
+                .from("orders o")
+                .where("o.customer_id = :customerId", 3)
+                .where(statuses)
+                .mergeOrEqualities();
+
+        assertThat(explain(query.buildBoundSql(ParameterStyle.POSITIONAL)))
+                .contains("/* PUBLIC.ORDERS_STATUS: STATUS IN(?2, ?3, 'S3') */");
+    }
+
+    private static PlainSqlBuilder query() {
+        var statuses = new Spec()
+                .where("o.status = :s1", "S1")
+                .or("o.customer_id = :customerId", 3)
+                .or("o.status = :s2", "S2");
+        return new PlainSqlBuilder()
+                .select("o.id")
+                .from("orders o")
+                .where(statuses)
+                .orderBy("o.id");
+    }
+
+    private String explain(BoundSql query) throws SQLException {
+        try (var statement = keepAlive.prepareStatement("explain " + query.sql())) {
+            QueryExecutor.bind(statement, query.parameters());
+            try (var resultSet = statement.executeQuery()) {
+                resultSet.next();
+                return resultSet.getString(1);
+            }
+        }
+    }
+}
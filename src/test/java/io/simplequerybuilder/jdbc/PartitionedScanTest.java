@@ -0,0 +1,157 @@
+package io.simplequerybuilder.jdbc;
+
+import io.simplequerybuilder.PlainSqlBuilder;
+import io.simplequerybuilder.Spec;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PartitionedScanTest {
+    private JdbcDataSource dataSource;
+    private Connection keepAlive;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + getClass().getSimpleName() + ";DB_CLOSE_DELAY=-1");
+        keepAlive = dataSource.getConnection();
+        try (var statement = keepAlive.createStatement()) {
+            statement.execute("create table events (id bigint primary key, kind int, created timestamp)");
+            statement.execute("insert into events select x, mod(x, 3), timestamp '2024-01-01 00:00:00' + x * interval '1' hour "
+                    + "from system_range(1, 2000)");
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        try (var statement = keepAlive.createStatement()) {
+            statement.execute("drop all objects");
+        }
+        keepAlive.close();
+    }
+
+    @Test
+    void should_add_non_overlapping_range_to_every_copy() {
+        var partitions = PartitionedScan.partitions(this::events, "e.id", KeyRange.split(0, 90, 3));
+
+        assertThat(partitions).extracting(partition -> partition.sql()).containsExactly(
+                "select e.id from events e where e.kind = ? and e.id < ? order by e.id",
+                "select e.id from events e where e.kind = ? and e.id >= ? and e.id < ? order by e.id",
+                "select e.id from events e where e.kind = ? and e.id >= ? order by e.id");
+        assertThat(partitions.get(1).parameters()).containsExactly(1, 30L, 60L);
+    }
+
+    @Test
+    void should_feed_partitions_in_key_order_to_ordered_sink() {
+        var rows = new ArrayList<Long>();
+
+        try (var scan = new PartitionedScan(new QueryExecutor(dataSource).fetchSize(50)).bufferSize(16)) {
+            var count = scan.forEachOrdered(this::events, "e.id", KeyRange.split(1, 1500, 4),
+                    resultSet -> resultSet.getLong(1), rows::add);
+
+            assertThat(count).isEqualTo(667);
+        }
+        assertThat(rows).hasSize(667).isSorted().allMatch(id -> id % 3 == 1);
+    }
+
+    @Test
+    void should_feed_every_row_once_to_unordered_sink() {
+        var rows = new ArrayList<Long>();
+        var pool = Executors.newFixedThreadPool(3);
+
+        try (var scan = new PartitionedScan(new QueryExecutor(dataSource), pool).bufferSize(8)) {
+            scan.forEach(this::events, "e.id", KeyRange.split(500, 1000, 5), resultSet -> resultSet.getLong(1), rows::add);
+        }
+        pool.shutdown();
+
+        assertThat(rows).hasSize(667).doesNotHaveDuplicates().allMatch(id -> id % 3 == 1);
+    }
+
+    @Test
+    void should_split_time_keys() {
+        var rows = new ArrayList<Long>();
+        var from = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+        try (var scan = new PartitionedScan(new QueryExecutor(dataSource))) {
+            scan.forEachOrdered(this::events, "e.created", KeyRange.split(from, from.plusHours(100), 4),
+                    resultSet -> resultSet.getLong(1), rows::add);
+        }
+
+        assertThat(rows).hasSize(667).isSorted();
+    }
+
+    @Test
+    void should_stop_workers_when_sink_fails() {
+        var rows = new ArrayList<Long>();
+
+        try (var scan = new PartitionedScan(new QueryExecutor(dataSource).fetchSize(10)).bufferSize(4)) {
+            assertThatThrownBy(() -> scan.forEachOrdered(this::events, "e.id", KeyRange.split(1, 2000, 4),
+                    resultSet -> resultSet.getLong(1), id -> {
+                        if (rows.size() == 5)
+                            throw new IllegalStateException("sink full");
+                        rows.add(id);
+                    })).isInstanceOf(IllegalStateException.class).hasMessage("sink full");
+        }
+        assertThat(rows).hasSize(5);
+    }
+
+    @Test
+    void should_group_top_level_or_before_the_range_filter() {
+        var partitions = PartitionedScan.partitions(() -> events().or("e.kind = 2"), "e.id", KeyRange.split(0, 10, 2));
+        assertThat(partitions.get(0).sql())
+                .isEqualTo("select e.id from events e where (e.kind = ? or e.kind = 2) and e.id < ? order by e.id");
+
+        var grouped = PartitionedScan.partitions(() -> new PlainSqlBuilder()
+                .select("e.id")
+                .from("events e")
+                .where(new Spec().and("e.kind = 1").or("e.kind = 2")), "e.id", KeyRange.split(0, 10, 1));
+        assertThat(grouped.get(0).sql()).isEqualTo("select e.id from events e where (e.kind = 1 or e.kind = 2)");
+    }
+
+    @Test
+    void should_not_overlap_partitions_of_filter_with_inline_or() {
+        var rows = new ArrayList<Long>();
+
+        try (var scan = new PartitionedScan(new QueryExecutor(dataSource))) {
+            scan.forEach(() -> new PlainSqlBuilder().select("e.id").from("events e").where("e.kind = 1 or e.id <= 10"),
+                    "e.id", KeyRange.split(1, 2000, 4), resultSet -> resultSet.getLong(1), rows::add);
+        }
+
+        assertThat(rows).doesNotHaveDuplicates().hasSize(673);
+    }
+
+    @Test
+    void should_split_long_range_evenly() {
+        assertThat(KeyRange.split(0, 10, 3)).containsExactly(
+                new KeyRange(null, 4L), new KeyRange(4L, 7L), new KeyRange(7L, null));
+    }
+
+    @Test
+    void should_split_date_range_by_days() {
+        var from = LocalDate.of(2024, 1, 1);
+
+        assertThat(KeyRange.split(from, LocalDate.of(2024, 1, 11), 3)).containsExactly(
+                new KeyRange(null, LocalDate.of(2024, 1, 5)),
+                new KeyRange(LocalDate.of(2024, 1, 5), LocalDate.of(2024, 1, 8)),
+                new KeyRange(LocalDate.of(2024, 1, 8), null));
+    }
+
+    private PlainSqlBuilder events() {
+        return new PlainSqlBuilder()
+                .select("e.id")
+                .from("events e")
+                .where("e.kind = :kind", 1)
+                .orderBy("e.id");
+    }
+}
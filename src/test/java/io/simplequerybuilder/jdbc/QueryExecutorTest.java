@@ -0,0 +1,275 @@
+package io.simplequerybuilder.jdbc;
+
+import io.simplequerybuilder.ExecutionEvent;
+import io.simplequerybuilder.InsertBuilder;
+import io.simplequerybuilder.ParameterStyle;
+import io.simplequerybuilder.PlainSqlBuilder;
+import io.simplequerybuilder.QueryListener;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class QueryExecutorTest {
+    private JdbcDataSource dataSource;
+    private Connection keepAlive;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + getClass().getSimpleName() + ";DB_CLOSE_DELAY=-1");
+        keepAlive = dataSource.getConnection();
+        try (var statement = keepAlive.createStatement()) {
+            statement.execute("create table orders (id bigint primary key, customer_id bigint, amount int)");
+            statement.execute("insert into orders select x, mod(x, 10), x * 2 from system_range(1, 5000)");
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        try (var statement = keepAlive.createStatement()) {
+            statement.execute("drop all objects");
+        }
+        keepAlive.close();
+    }
+
+    @Test
+    void should_stream_rows_with_bound_parameters() {
+        var query = new PlainSqlBuilder()
+                .select("o.id")
+                .from("orders o")
+                .where("o.customer_id = :customerId", 3)
+                .and("o.id < :maxId", 50)
+                .orderBy("o.id");
+
+        try (var ids = new QueryExecutor(dataSource).fetchSize(2).stream(query, resultSet -> resultSet.getLong(1))) {
+            assertThat(ids.collect(Collectors.toList())).containsExactly(3L, 13L, 23L, 33L, 43L);
+        }
+    }
+
+    @Test
+    void should_visit_every_row_through_callback() {
+        var query = new PlainSqlBuilder()
+                .select("o.amount")
+                .from("orders o");
+        var total = new AtomicLong();
+
+        new QueryExecutor(dataSource).forEach(query, resultSet -> resultSet.getLong(1), total::addAndGet);
+
+        assertThat(total.get()).isEqualTo(5000L * 5001);
+    }
+
+    @Test
+    void should_list_rows_and_count_them() {
+        var executor = new QueryExecutor(dataSource);
+        var query = new PlainSqlBuilder()
+                .select("o.id")
+                .from("orders o")
+                .where("o.customer_id = :customerId", 7)
+                .orderBy("o.id")
+                .limit(3);
+
+        assertThat(executor.list(query, resultSet -> resultSet.getLong("id"))).containsExactly(7L, 17L, 27L);
+        assertThat(executor.count(query)).isEqualTo(500);
+    }
+
+    @Test
+    void should_stop_reading_and_release_connection_when_stream_is_closed() throws SQLException {
+        var executor = new QueryExecutor(dataSource).fetchSize(10);
+        var query = new PlainSqlBuilder()
+                .select("o.id")
+                .from("orders o")
+                .orderBy("o.id");
+
+        try (var ids = executor.stream(query, resultSet -> resultSet.getLong(1))) {
+            assertThat(ids.limit(3).collect(Collectors.toList())).containsExactly(1L, 2L, 3L);
+        }
+
+        try (var connection = dataSource.getConnection()) {
+            assertThat(connection.getAutoCommit()).isTrue();
+        }
+    }
+
+    @Test
+    void should_only_switch_auto_commit_for_streams_with_explicit_fetch_size() {
+        var calls = new ArrayList<String>();
+        var recording = recordingTransactions(calls);
+        var query = new PlainSqlBuilder().select("o.id").from("orders o").orderBy("o.id").limit(3);
+
+        var executor = new QueryExecutor(recording);
+        executor.list(query, resultSet -> resultSet.getLong(1));
+        executor.count(query);
+        executor.forEach(query, resultSet -> resultSet.getLong(1), id -> {
+        });
+        assertThat(calls).isEmpty();
+
+        var streaming = new QueryExecutor(recording).fetchSize(10);
+        streaming.list(query, resultSet -> resultSet.getLong(1));
+        assertThat(calls).isEmpty();
+        try (var ids = streaming.stream(query, resultSet -> resultSet.getLong(1))) {
+            assertThat(ids.toList()).containsExactly(1L, 2L, 3L);
+        }
+        assertThat(calls).containsExactly("setAutoCommit", "commit", "setAutoCommit");
+    }
+
+    @Test
+    void should_wrap_sql_errors() {
+        var query = new PlainSqlBuilder()
+                .select("o.missing")
+                .from("orders o");
+
+        assertThatThrownBy(() -> new QueryExecutor(dataSource).list(query, resultSet -> resultSet.getLong(1)))
+                .isInstanceOf(QueryExecutionException.class)
+                .hasMessageContaining("select o.missing from orders o")
+                .hasCauseInstanceOf(SQLException.class);
+    }
+
+    @Test
+    void should_propagate_mapper_failures_after_closing_cursor() {
+        var query = new PlainSqlBuilder()
+                .select("o.id")
+                .from("orders o");
+        var seen = new ArrayList<Long>();
+
+        assertThatThrownBy(() -> new QueryExecutor(dataSource).forEach(query, resultSet -> resultSet.getLong(1), id -> {
+            seen.add(id);
+            if (seen.size() == 2)
+                throw new IllegalStateException("stop");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(seen).hasSize(2);
+    }
+
+    @Test
+    void should_report_executions_to_listener() {
+        var events = new ArrayList<ExecutionEvent>();
+        QueryListener listener = new QueryListener() {
+            @Override
+            public void onExecution(ExecutionEvent event) {
+                events.add(event);
+            }
+        };
+        var executor = new QueryExecutor(dataSource).listener(listener);
+        var query = new PlainSqlBuilder()
+                .select("o.id")
+                .from("orders o")
+                .where("o.customer_id = :customerId", 3);
+
+        executor.list(query, resultSet -> resultSet.getLong(1));
+        assertThatThrownBy(() -> executor.list(new PlainSqlBuilder().select("o.missing").from("orders o"),
+                resultSet -> resultSet.getLong(1))).isInstanceOf(QueryExecutionException.class);
+
+        assertThat(events).hasSize(2);
+        assertThat(events.get(0).rows()).isEqualTo(500);
+        assertThat(events.get(0).shapeFingerprint()).isEqualTo(query.shapeFingerprint());
+        assertThat(events.get(0).executeNanos()).isPositive();
+        assertThat(events.get(0).fetchNanos()).isPositive();
+        assertThat(events.get(0).failure()).isNull();
+        assertThat(events.get(1).failure()).isInstanceOf(QueryExecutionException.class);
+    }
+
+    @Test
+    void should_insert_rows_in_chunks() {
+        var executor = new QueryExecutor(dataSource);
+        var rows = new ArrayList<Object[]>();
+        for (long id = 10_001; id <= 10_250; id++)
+            rows.add(new Object[]{id, 42L, 1});
+
+        var inserted = executor.execute(new InsertBuilder()
+                .into("orders")
+                .columns("id", "customer_id", "amount")
+                .rows(rows)
+                .maxParameters(300));
+
+        assertThat(inserted).isEqualTo(250);
+        assertThat(executor.count(new PlainSqlBuilder().from("orders o").where("o.customer_id = :customerId", 42L)))
+                .isEqualTo(250);
+    }
+
+    @Test
+    void should_bind_parameterized_literals() {
+        var executor = new QueryExecutor(dataSource);
+        var statements = new HashSet<String>();
+        for (int customerId = 1; customerId <= 3; customerId++) {
+            var query = new PlainSqlBuilder()
+                    .select("o.id")
+                    .from("orders o")
+                    .where("o.customer_id = " + customerId)
+                    .and("o.id <= 30")
+                    .orderBy("o.id")
+                    .parameterizeLiterals();
+            statements.add(query.buildBoundSql(ParameterStyle.POSITIONAL).sql());
+            assertThat(executor.list(query, resultSet -> resultSet.getLong(1)))
+                    .containsExactly((long) customerId, customerId + 10L, customerId + 20L);
+        }
+
+        assertThat(statements).containsExactly("select o.id from orders o where o.customer_id = ? and o.id <= ? order by o.id");
+    }
+
+    @Test
+    void should_return_same_page_with_deferred_join() throws SQLException {
+        try (var statement = keepAlive.createStatement()) {
+            statement.execute("create table customers (id bigint primary key, name varchar(20))");
+            statement.execute("insert into customers select x, 'customer ' || x from system_range(0, 9)");
+        }
+        var executor = new QueryExecutor(dataSource);
+        RowMapper<String> mapper = resultSet -> resultSet.getLong(1) + " " + resultSet.getString(2);
+
+        var normal = executor.list(page(), mapper);
+        var deferred = executor.list(page().deferredJoin("o.id"), mapper);
+
+        assertThat(deferred).hasSize(6).containsExactlyElementsOf(normal);
+    }
+
+    private static PlainSqlBuilder page() {
+        return new PlainSqlBuilder()
+                .select("o.id", "c.name")
+                .from("orders o")
+                .leftJoinToOne("customers c on c.id = o.customer_id")
+                .where("o.amount > :amount", 100)
+                .orderBy("o.id")
+                .limit(6)
+                .offset(3);
+    }
+
+    @Test
+    void should_reject_negative_fetch_size() {
+        assertThatThrownBy(() -> new QueryExecutor(dataSource).fetchSize(-1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    // Records the transaction calls made on the connections of the data source.
+    private DataSource recordingTransactions(List<String> calls) {
+        return (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{DataSource.class},
+                (proxy, method, args) -> {
+                    if (!method.getName().equals("getConnection"))
+                        throw new UnsupportedOperationException(method.getName());
+                    var connection = dataSource.getConnection();
+                    return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                            (connectionProxy, connectionMethod, connectionArgs) -> {
+                                if (connectionMethod.getName().equals("setAutoCommit")
+                                        || connectionMethod.getName().equals("commit"))
+                                    calls.add(connectionMethod.getName());
+                                try {
+                                    return connectionMethod.invoke(connection, connectionArgs);
+                                } catch (InvocationTargetException e) {
+                                    throw e.getCause();
+                                }
+                            });
+                });
+    }
+}
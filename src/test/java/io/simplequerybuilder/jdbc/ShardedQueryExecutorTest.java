@@ -0,0 +1,180 @@
+package io.simplequerybuilder.jdbc;
+
+import io.simplequerybuilder.PlainSqlBuilder;
+import io.simplequerybuilder.SortColumn;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ShardedQueryExecutorTest {
+    private final List<Connection> keepAlive = new ArrayList<>();
+    private final List<QueryExecutor> shards = new ArrayList<>();
+    private QueryExecutor all;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        for (int shard = 0; shard < 3; shard++)
+            shards.add(database("shard" + shard, "mod(x, 3) = " + shard));
+        all = database("all", "true");
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        for (var connection : keepAlive) {
+            try (var statement = connection.createStatement()) {
+                statement.execute("drop all objects");
+            }
+            connection.close();
+        }
+    }
+
+    @Test
+    void should_merge_top_rows_of_all_shards() {
+        try (var executor = new ShardedQueryExecutor(shards)) {
+            var merged = executor.list(topOrders(), resultSet -> resultSet.getLong("id"));
+
+            assertThat(merged).hasSize(7).isEqualTo(all.list(topOrders(), resultSet -> resultSet.getLong("id")));
+        }
+    }
+
+    @Test
+    void should_push_limit_and_offset_down_as_top_rows() {
+        var query = topOrders();
+
+        assertThat(query.buildBoundShardSql(io.simplequerybuilder.ParameterStyle.POSITIONAL).sql())
+                .endsWith("order by o.amount desc, o.id limit 12");
+        assertThat(query.buildSql()).endsWith("order by o.amount desc, o.id limit 7 offset 5");
+    }
+
+    @Test
+    void should_merge_with_default_order_and_nulls_first() {
+        var query = new PlainSqlBuilder()
+                .select("o.id", "o.note")
+                .from("orders o")
+                .defaultOrderBy("o.note nulls first", "o.id desc");
+
+        try (var executor = new ShardedQueryExecutor(shards)) {
+            assertThat(executor.list(query, resultSet -> resultSet.getLong("id")))
+                    .isEqualTo(all.list(query, resultSet -> resultSet.getLong("id")));
+        }
+    }
+
+    @Test
+    void should_require_explicit_nulls_order_for_null_keys() {
+        var query = new PlainSqlBuilder()
+                .select("o.id", "o.note")
+                .from("orders o")
+                .orderBy("o.note", "o.id");
+
+        try (var executor = new ShardedQueryExecutor(shards)) {
+            assertThatThrownBy(() -> executor.list(query, resultSet -> resultSet.getLong("id")))
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessageContaining("nulls first or nulls last");
+        }
+    }
+
+    @Test
+    void should_not_change_builder_while_rendering_shard_sql() throws Exception {
+        var query = topOrders();
+        var threads = new ArrayList<Thread>();
+        for (int i = 0; i < 4; i++) {
+            var thread = new Thread(() -> {
+                for (int j = 0; j < 1_000; j++)
+                    query.buildBoundShardSql(io.simplequerybuilder.ParameterStyle.POSITIONAL);
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (var thread : threads)
+            thread.join();
+
+        assertThat(query.limit()).isEqualTo(7);
+        assertThat(query.offset()).isEqualTo(5);
+        assertThat(query.buildSql()).endsWith("limit 7 offset 5");
+    }
+
+    @Test
+    void should_merge_with_comparator_for_computed_order() {
+        var query = new PlainSqlBuilder()
+                .select("o.id", "o.amount * 2 as doubled")
+                .from("orders o")
+                .orderBy("o.amount * 2", "o.id")
+                .limit(4);
+
+        try (var executor = new ShardedQueryExecutor(shards)) {
+            assertThatThrownBy(() -> executor.list(query, resultSet -> resultSet.getLong("id")))
+                    .isInstanceOf(IllegalStateException.class);
+
+            var merged = executor.list(query, resultSet -> new long[]{resultSet.getLong("doubled"), resultSet.getLong("id")},
+                    Comparator.<long[]>comparingLong(row -> row[0]).thenComparingLong(row -> row[1]));
+            assertThat(merged).extracting(row -> row[1])
+                    .hasSize(4)
+                    .isEqualTo(all.list(query, resultSet -> resultSet.getLong("id")));
+        }
+    }
+
+    @Test
+    void should_concatenate_shards_without_order() {
+        var query = new PlainSqlBuilder()
+                .select("o.id")
+                .from("orders o")
+                .where("o.id <= :maxId", 6);
+
+        try (var executor = new ShardedQueryExecutor(shards)) {
+            assertThat(executor.list(query, resultSet -> resultSet.getLong("id")))
+                    .containsExactlyInAnyOrder(1L, 2L, 3L, 4L, 5L, 6L);
+        }
+    }
+
+    @Test
+    void should_close_opened_shards_when_one_fails() {
+        var down = new JdbcDataSource();
+        down.setURL("jdbc:h2:mem:" + getClass().getSimpleName() + "down;IFEXISTS=TRUE");
+        var broken = new ArrayList<>(shards);
+        broken.add(new QueryExecutor(down));
+
+        try (var executor = new ShardedQueryExecutor(broken)) {
+            assertThatThrownBy(() -> executor.list(topOrders(), resultSet -> resultSet.getLong("id")))
+                    .isInstanceOf(QueryExecutionException.class);
+        }
+    }
+
+    @Test
+    void should_parse_sort_columns() {
+        assertThat(new PlainSqlBuilder().orderBy("o.created desc nulls last", "o.id").sortColumns())
+                .containsExactly(new SortColumn("o.created", true, false), new SortColumn("o.id", false));
+    }
+
+    private static PlainSqlBuilder topOrders() {
+        return new PlainSqlBuilder()
+                .select("o.id", "o.amount")
+                .from("orders o")
+                .where("o.customer_id = :customerId", 2)
+                .orderBy("o.amount desc", "o.id")
+                .limit(7)
+                .offset(5);
+    }
+
+    private QueryExecutor database(String name, String filter) throws SQLException {
+        var dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + getClass().getSimpleName() + name + ";DB_CLOSE_DELAY=-1");
+        var connection = dataSource.getConnection();
+        keepAlive.add(connection);
+        try (var statement = connection.createStatement()) {
+            statement.execute("create table orders (id bigint primary key, customer_id bigint, amount int, note varchar(10))");
+            statement.execute("insert into orders select x, mod(x, 4), mod(x * 37, 11), "
+                    + "case when mod(x, 5) = 0 then null else 'n' || mod(x, 7) end from system_range(1, 200) where " + filter);
+        }
+        return new QueryExecutor(dataSource).fetchSize(4);
+    }
+}
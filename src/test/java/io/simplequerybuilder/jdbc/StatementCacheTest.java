@@ -0,0 +1,183 @@
+package io.simplequerybuilder.jdbc;
+
+import io.simplequerybuilder.PlainSqlBuilder;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StatementCacheTest {
+    private Connection physical;
+    private DataSource pool;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        var h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:" + getClass().getSimpleName() + ";DB_CLOSE_DELAY=-1");
+        physical = h2.getConnection();
+        try (var statement = physical.createStatement()) {
+            statement.execute("create table orders (id bigint primary key, customer_id bigint)");
+            statement.execute("insert into orders select x, mod(x, 10) from system_range(1, 100)");
+        }
+        pool = singleConnectionPool(physical);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        try (var statement = physical.createStatement()) {
+            statement.execute("drop all objects");
+        }
+        physical.close();
+    }
+
+    @Test
+    void should_reuse_statement_for_same_sql_across_borrowed_connections() {
+        var cache = new StatementCache(8);
+        var executor = new QueryExecutor(pool).statementCache(cache);
+
+        for (long customerId = 1; customerId <= 3; customerId++) {
+            long expected = customerId;
+            assertThat(executor.list(ordersOf(customerId), resultSet -> resultSet.getLong(1)))
+                    .hasSize(10)
+                    .allMatch(id -> id % 10 == expected);
+        }
+
+        assertThat(cache.misses()).isEqualTo(1);
+        assertThat(cache.hits()).isEqualTo(2);
+        assertThat(cache.evictions()).isZero();
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    void should_bind_fresh_parameters_on_cached_statement() {
+        var executor = new QueryExecutor(pool).statementCache(new StatementCache(8));
+
+        assertThat(executor.list(ordersOf(1), resultSet -> resultSet.getLong(1))).startsWith(1L, 11L);
+        assertThat(executor.list(ordersOf(2), resultSet -> resultSet.getLong(1))).startsWith(2L, 12L);
+    }
+
+    @Test
+    void should_prepare_fresh_statement_while_cached_one_is_in_use() {
+        var cache = new StatementCache(8);
+        var executor = new QueryExecutor(pool).statementCache(cache);
+
+        try (var outer = executor.stream(ordersOf(1), resultSet -> resultSet.getLong(1))) {
+            var lookups = outer.map(id -> executor.list(ordersOf(2), resultSet -> resultSet.getLong(1)).size()).toList();
+            assertThat(lookups).hasSize(10).containsOnly(10);
+        }
+
+        assertThat(cache.misses()).isEqualTo(11);
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(executor.list(ordersOf(3), resultSet -> resultSet.getLong(1))).hasSize(10);
+        assertThat(cache.hits()).isEqualTo(1);
+    }
+
+    @Test
+    void should_evict_least_recently_used_statement() throws SQLException {
+        var cache = new StatementCache(2);
+        var executor = new QueryExecutor(pool).statementCache(cache);
+        var first = ordersOf(1);
+        var second = ordersOf(1).and("o.id > 0");
+        var third = ordersOf(1).and("o.id > 1");
+
+        executor.list(first, resultSet -> resultSet.getLong(1));
+        executor.list(second, resultSet -> resultSet.getLong(1));
+        executor.list(first, resultSet -> resultSet.getLong(1));
+        executor.list(third, resultSet -> resultSet.getLong(1));
+        executor.list(first, resultSet -> resultSet.getLong(1));
+        executor.list(second, resultSet -> resultSet.getLong(1));
+
+        assertThat(cache.hits()).isEqualTo(2);
+        assertThat(cache.misses()).isEqualTo(4);
+        assertThat(cache.evictions()).isEqualTo(2);
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(physical.isClosed()).isFalse();
+    }
+
+    @Test
+    void should_prepare_again_after_clear() {
+        var cache = new StatementCache(4);
+        var executor = new QueryExecutor(pool).statementCache(cache);
+
+        executor.list(ordersOf(1), resultSet -> resultSet.getLong(1));
+        cache.clear();
+        executor.list(ordersOf(1), resultSet -> resultSet.getLong(1));
+
+        assertThat(cache.misses()).isEqualTo(2);
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    void should_drop_statements_of_connections_closed_by_the_pool() throws SQLException {
+        var cache = new StatementCache(4);
+        var other = new JdbcDataSource();
+        other.setURL("jdbc:h2:mem:" + getClass().getSimpleName() + ";DB_CLOSE_DELAY=-1");
+        var retired = other.getConnection();
+        var executor = new QueryExecutor(pool).statementCache(cache);
+
+        executor.list(ordersOf(1), resultSet -> resultSet.getLong(1));
+        new QueryExecutor(singleConnectionPool(retired)).statementCache(cache)
+                .list(ordersOf(1), resultSet -> resultSet.getLong(1));
+        retired.close();
+        executor.list(ordersOf(1), resultSet -> resultSet.getLong(1));
+
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.hits()).isEqualTo(1);
+    }
+
+    @Test
+    void should_reject_empty_cache() {
+        assertThatThrownBy(() -> new StatementCache(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static PlainSqlBuilder ordersOf(long customerId) {
+        return new PlainSqlBuilder()
+                .select("o.id")
+                .from("orders o")
+                .where("o.customer_id = :customerId", customerId)
+                .orderBy("o.id");
+    }
+
+    // Hands out a new proxy over the same physical connection on every borrow, the way connection pools do.
+    private static DataSource singleConnectionPool(Connection physical) {
+        return (DataSource) Proxy.newProxyInstance(StatementCacheTest.class.getClassLoader(), new Class<?>[]{DataSource.class},
+                (dataSource, method, args) -> {
+                    if (!method.getName().equals("getConnection"))
+                        throw new UnsupportedOperationException(method.getName());
+                    return borrowed(physical);
+                });
+    }
+
+    private static Connection borrowed(Connection physical) {
+        var closed = new boolean[1];
+        return (Connection) Proxy.newProxyInstance(StatementCacheTest.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (connection, method, args) -> {
+                    switch (method.getName()) {
+                        case "close":
+                            closed[0] = true;
+                            return null;
+                        case "isClosed":
+                            return closed[0];
+                        case "isWrapperFor":
+                            return args[0] == Connection.class;
+                        case "unwrap":
+                            return physical;
+                        default:
+                            try {
+                                return method.invoke(physical, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                    }
+                });
+    }
+}